@@ -1,137 +1,216 @@
 package vid.manager;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import vid.builder.UploadHistory;
 
 /**
  * Per-channel upload scheduler.
  *
- * <p>A {@code ChannelScheduler} owns the {@code pending}, {@code archive}
- * and {@code upload_history.txt} files for a single channel and is
+ * <p>A {@code ChannelScheduler} owns the {@code pending} and
+ * {@code archive} folders and the {@link UploadHistory} of a single
+ * channel and is
  * responsible for:</p>
  * <ul>
- *   <li>enumerating MP4s ready for upload,</li>
+ *   <li>enumerating MP4s ready for upload (kept current by its
+ *       {@link PendingQueue}),</li>
  *   <li>spacing uploads five hours apart (while honouring the timestamp of
  *       the last successful upload),</li>
  *   <li>invoking {@link YouTubeUploader} and moving the source file to
  *       {@code archive/} on success,</li>
+ *   <li>recording every step in its {@link UploadJournal}, so a restart
+ *       resumes the plan instead of losing it and continues an interrupted
+ *       upload instead of posting it twice,</li>
  *   <li>rescheduling the remaining batch to the next day when YouTube
  *       signals a daily upload-quota error.</li>
  * </ul>
  */
 public class ChannelScheduler {
+  private static final Duration SPACING = Duration.ofHours(5);
+
   private final String channelName;
   private final Path pendingDir;
   private final Path archiveDir;
-  private final Path historyFile;
+  private final UploadHistory history;
+  private final UploadJournal journal;
+  private final PendingQueue pending;
   private final String clientId;
   private final String clientSecret;
   private final String userEmail;
-  private final ScheduledExecutorService executor;
-  private final Map<String, Instant> nextScheduledMap;
-  private final Set<Path> scheduledVideos;
+  private final TimingWheel wheel;
+  private final Executor uploads;
 
   public ChannelScheduler(Path baseChannelsDir,
                           String channelName,
                           Main.ChannelConfig cfg,
-                          ScheduledExecutorService executor,
-                          Map<String, Instant> nextScheduledMap,
-                          Set<Path> scheduledVideos) throws IOException {
+                          PendingQueue pending,
+                          TimingWheel wheel,
+                          Executor uploads) throws IOException {
     this.channelName      = channelName;
     this.pendingDir       = baseChannelsDir.resolve(channelName).resolve("pending");
     this.archiveDir       = baseChannelsDir.resolve(channelName).resolve("archive");
-    this.historyFile      = baseChannelsDir.resolve(channelName).resolve("upload_history.txt");
+    this.history          = UploadHistory.open(baseChannelsDir.resolve(channelName).resolve("upload_history.txt"));
+    this.journal          = new UploadJournal(baseChannelsDir.resolve(channelName));
+    this.pending          = pending;
     this.clientId         = cfg.clientId();
     this.clientSecret     = cfg.clientSecret();
     this.userEmail        = cfg.email();
-    this.executor         = executor;
-    this.nextScheduledMap = nextScheduledMap;
-    this.scheduledVideos  = scheduledVideos;
+    this.wheel            = wheel;
+    this.uploads          = uploads;
 
     Files.createDirectories(pendingDir);
     Files.createDirectories(archiveDir);
-    Files.createDirectories(historyFile.getParent());
   }
 
-  public void scheduleAll() throws IOException {
-    List<Path> videos = Files.list(pendingDir)
-      .filter(p -> p.toString().endsWith(".mp4"))
-      .map(Path::toAbsolutePath)
-      .map(Path::normalize)
-      .sorted(Comparator.naturalOrder())
-      .collect(Collectors.toList());
-
-    if (videos.isEmpty()) {
-      System.out.println("No pending videos for channel “" + channelName + "”");
-      return;
-    }
-
+  /**
+   * Picks up where the previous run left off: continues interrupted uploads
+   * from their recorded session, re-queues the ones that never opened one,
+   * finishes uploads that YouTube already confirmed, and re-arms every
+   * scheduled upload. Slots missed while the manager was down are moved up
+   * to keep five hours between uploads instead of all firing at once. Safe
+   * to run any number of times.
+   */
+  public void resume() {
     Instant now = Instant.now();
-    Instant firstScheduled;
-
-    if (!Files.exists(historyFile) || Files.readAllLines(historyFile, StandardCharsets.UTF_8).isEmpty()) {
-      firstScheduled = now;
-    } else {
-      Instant lastUpload  = readLastUploadTime();
-      Instant nextAllowed = lastUpload.plus(Duration.ofHours(5));
-      firstScheduled      = nextAllowed.isAfter(now) ? nextAllowed : now;
-    }
-
-    // if first video already scheduled in the future, skip entire batch
-    Instant existing = nextScheduledMap.get(channelName);
-    if (existing != null && existing.isAfter(now)) {
-      System.out.printf("⚠️ [%s] batch already scheduled at %s, skipping%n",
-        channelName,
-        existing.atZone(ZoneId.systemDefault()).toLocalTime().withSecond(0).withNano(0));
-      return;
+    boolean resumingNow = false;
+    List<UploadJournal.Job> scheduled = new ArrayList<>();
+
+    for (UploadJournal.Job job : journal.jobs()) {
+      String filename = job.filename();
+      Path video = pendingDir.resolve(filename).toAbsolutePath().normalize();
+      try {
+        switch (job.state()) {
+          case SCHEDULED -> {
+            if (Files.exists(video)) {
+              scheduled.add(job);
+            } else {
+              System.out.printf("⚠️ [%s] %s vanished from pending/, dropping it%n", channelName, filename);
+              journal.forget(filename);
+            }
+          }
+          case UPLOADING -> {
+            if (!Files.exists(video) && history.contains(filename)) {
+              // finished, only the last journal record was lost
+              journal.archived(filename);
+            } else if (!Files.exists(video)) {
+              System.out.printf("⚠️ [%s] %s vanished from pending/, dropping it%n", channelName, filename);
+              journal.forget(filename);
+            } else if (job.uploadUrl() != null) {
+              System.out.printf("🔁 [%s] %s was interrupted mid-upload — resuming its session%n",
+                channelName, filename);
+              journal.scheduled(filename, now);
+              arm(video, now);
+              resumingNow = true;
+            } else {
+              // no session was opened, so nothing reached YouTube
+              System.err.printf("⚠️ [%s] %s was interrupted before its upload began — re-queuing%n",
+                channelName, filename);
+              journal.pending(filename);
+            }
+          }
+          case UPLOADED -> archive(video, job.scheduledAt());
+          default -> { }
+        }
+      } catch (Exception e) {
+        System.err.printf("‼ [%s] Could not resume %s: %s%n", channelName, filename, e.getMessage());
+      }
     }
 
-    for (int i = 0; i < videos.size(); i++) {
-      Path video = videos.get(i);
+    Instant floor = now;
+    Optional<Instant> lastUpload = history.lastUploadTime();
+    if (lastUpload.isPresent() && lastUpload.get().plus(SPACING).isAfter(floor)) {
+      floor = lastUpload.get().plus(SPACING);
+    }
+    if (resumingNow && now.plus(SPACING).isAfter(floor)) {
+      floor = now.plus(SPACING);
+    }
 
-      // skip if already in-flight
-      if (!scheduledVideos.add(video)) {
-        System.out.printf("⚠️ Already scheduled: %s%n", video.getFileName());
+    int rearmed = 0;
+    int moved = 0;
+    for (UploadJournal.Job job : scheduled) {
+      String filename = job.filename();
+      Path video = pendingDir.resolve(filename).toAbsolutePath().normalize();
+      Instant slot = job.scheduledAt().isBefore(floor) ? floor : job.scheduledAt();
+      try {
+        if (!slot.equals(job.scheduledAt())) {
+          journal.scheduled(filename, slot);
+          moved++;
+        }
+      } catch (IOException e) {
+        System.err.printf("‼ [%s] Could not resume %s: %s%n", channelName, filename, e.getMessage());
         continue;
       }
+      arm(video, slot);
+      rearmed++;
+      floor = slot.plus(SPACING);
+    }
+    if (rearmed > 0) {
+      System.out.printf("🔁 [%s] Restored %d scheduled uploads (%d moved to keep the spacing)%n",
+        channelName, rearmed, moved);
+    }
+  }
+
+  /** The next upload waiting for its slot, if any. */
+  public Optional<UploadJournal.Job> nextUpload() {
+    return journal.nextScheduled();
+  }
 
-      Instant scheduledTime = firstScheduled.plus(Duration.ofHours(5L * i));
-      long delayMs = Math.max(Duration.between(now, scheduledTime).toMillis(), 0);
+  /**
+   * Gives every ready video without a slot the next free one: five hours
+   * after the last upload or the last slot already handed out, whichever
+   * is later.
+   */
+  public void scheduleAll() {
+    List<Path> videos = pending.snapshot();
 
-      // schedule upload
-      executor.schedule(() -> uploadAndArchive(video, scheduledTime),
-                        delayMs, TimeUnit.MILLISECONDS);
+    if (videos.isEmpty()) {
+      System.out.println("No pending videos for channel “" + channelName + "”");
+      return;
+    }
 
-      // record next-upload = first video's time
-      if (i == 0) {
-        nextScheduledMap.put(channelName, scheduledTime);
+    Instant now  = Instant.now();
+    Instant slot = now;
+    Optional<Instant> lastUpload = history.lastUploadTime();
+    if (lastUpload.isPresent() && lastUpload.get().plus(SPACING).isAfter(slot)) {
+      slot = lastUpload.get().plus(SPACING);
+    }
+    Optional<Instant> lastScheduled = journal.lastScheduled();
+    if (lastScheduled.isPresent() && lastScheduled.get().plus(SPACING).isAfter(slot)) {
+      slot = lastScheduled.get().plus(SPACING);
+    }
+
+    for (Path video : videos) {
+      String filename = video.getFileName().toString();
+      // skip if already scheduled or in-flight
+      if (journal.isActive(filename)) continue;
+
+      try {
+        journal.scheduled(filename, slot);
+      } catch (IOException e) {
+        System.err.printf("‼ [%s] Could not journal %s: %s%n", channelName, filename, e.getMessage());
+        return;
       }
+      arm(video, slot);
 
       System.out.printf("  • Scheduled %s at %s%n",
         video.getFileName(),
-        scheduledTime.atZone(ZoneId.systemDefault()).toLocalTime().withSecond(0).withNano(0));
+        slot.atZone(ZoneId.systemDefault()).toLocalTime().withSecond(0).withNano(0));
+      slot = slot.plus(SPACING);
     }
   }
 
-  private Instant readLastUploadTime() throws IOException {
-    List<String> lines = Files.readAllLines(historyFile, StandardCharsets.UTF_8);
-    String lastLine = lines.get(lines.size() - 1);
-    String timestamp = lastLine.split(",", 2)[0];
-    return Instant.parse(timestamp);
+  private void arm(Path video, Instant when) {
+    wheel.schedule(() -> uploadAndArchive(video, when), when, uploads);
   }
 
   private void uploadAndArchive(Path video, Instant scheduledTime) {
@@ -139,99 +218,122 @@ public class ChannelScheduler {
     String title    = filename.substring(0, filename.length() - 4).replace('_', ' ');
 
     try {
+      if (!Files.exists(video)) {
+        System.out.printf("⚠️ [%s] %s vanished from pending/, dropping it%n", channelName, filename);
+        journal.forget(filename);
+        return;
+      }
+
+      // a task superseded by a reschedule (or already handled) does nothing
+      if (!journal.startUpload(filename, scheduledTime)) return;
       System.out.printf("🚀 Uploading %s%n", filename);
 
-      YouTubeUploader.uploadVideo(
+      // continue the session of an interrupted attempt rather than posting the video again
+      String resumeUrl = journal.get(filename).map(UploadJournal.Job::uploadUrl).orElse(null);
+      String videoId = YouTubeUploader.uploadVideo(
         video.toString(),
         title,
         "",
         "public",
         clientId,
         clientSecret,
-        userEmail
+        userEmail,
+        resumeUrl,
+        url -> journal.uploadSession(filename, url)
       );
+      journal.uploaded(filename, videoId);
 
-      // move file to archive (retry if locked)
-      Path moved = archiveDir.resolve(filename);
-      for (int retry = 0; retry < 5; retry++) {
-        try {
-          Files.move(video, moved, StandardCopyOption.REPLACE_EXISTING);
-          break;
-        } catch (IOException e) {
-          if (retry == 4) throw e;
-          Thread.sleep(200);
-        }
-      }
-
-      // append timestamp to history
-      String record = scheduledTime + "," + filename + "\n";
-      Files.write(historyFile,
-                  record.getBytes(StandardCharsets.UTF_8),
-                  StandardOpenOption.CREATE,
-                  StandardOpenOption.APPEND);
-
+      archive(video, scheduledTime);
       System.out.printf("✔ Uploaded & archived %s%n", filename);
 
-      // schedule next-upload map to the *next* video time
-      Instant nextUpload = scheduledTime.plus(Duration.ofHours(5));
-      // only if there are still pending videos
-      boolean hasMore = Files.list(pendingDir).anyMatch(p -> p.toString().endsWith(".mp4"));
-      if (hasMore) {
-        nextScheduledMap.put(channelName, nextUpload);
-      } else {
-        nextScheduledMap.remove(channelName);
-      }
-
     } catch (com.google.api.client.googleapis.json.GoogleJsonResponseException e) {
       boolean quotaHit = e.getDetails() != null &&
         e.getDetails().getErrors().stream()
           .anyMatch(err -> "uploadLimitExceeded".equals(err.getReason()));
       if (quotaHit) {
         System.err.printf("🚫 Quota hit on %s — rescheduling batch for tomorrow%n", filename);
-        rescheduleBatchForTomorrow(video);
+        rescheduleBatchForTomorrow(filename);
         return;
       }
       e.printStackTrace();
       System.err.printf("‼ API error on %s: %s%n", filename, e.getMessage());
+      // YouTube rejected the session itself; the next attempt opens a new one
+      dropSession(filename);
+      requeue(filename);
     } catch (Exception e) {
       e.printStackTrace();
       System.err.printf("‼ Unexpected error on %s: %s%n", filename, e.getMessage());
-    } finally {
-      // remove from in-flight
-      scheduledVideos.remove(video);
+      requeue(filename);
     }
   }
 
-  private void rescheduleBatchForTomorrow(Path failedVideo) {
-    try {
-      List<Path> all = Files.list(pendingDir)
-        .filter(p -> p.toString().endsWith(".mp4"))
-        .map(Path::toAbsolutePath)
-        .map(Path::normalize)
-        .sorted(Comparator.naturalOrder())
-        .collect(Collectors.toList());
+  /**
+   * Moves an uploaded video to {@code archive/}, logs it in the history and
+   * marks it archived. Each step is skipped if it already happened.
+   */
+  private void archive(Path video, Instant scheduledTime) throws IOException, InterruptedException {
+    String filename = video.getFileName().toString();
 
-      int idx = all.indexOf(failedVideo);
-      if (idx < 0) return;
+    // move file to archive (retry if locked)
+    Path moved = archiveDir.resolve(filename);
+    for (int retry = 0; retry < 5 && Files.exists(video); retry++) {
+      try {
+        Files.move(video, moved, StandardCopyOption.REPLACE_EXISTING);
+        break;
+      } catch (IOException e) {
+        if (retry == 4) throw e;
+        Thread.sleep(200);
+      }
+    }
 
-      Instant base = Instant.now().plus(Duration.ofDays(1));
-      for (int i = idx; i < all.size(); i++) {
-        Path vid = all.get(i);
-        Instant when = base.plus(Duration.ofHours(5L * (i - idx)));
-        long delay = Math.max(Duration.between(Instant.now(), when).toMillis(), 0);
+    // append timestamp to history
+    if (!history.contains(filename)) {
+      history.append(scheduledTime, filename);
+    }
+    journal.archived(filename);
+  }
 
-        executor.schedule(() -> uploadAndArchive(vid, when),
-                          delay, TimeUnit.MILLISECONDS);
+  /** Puts a failed upload back in line; the next check gives it a new slot. */
+  private void requeue(String filename) {
+    try {
+      Optional<UploadJournal.Job> job = journal.get(filename);
+      if (job.isPresent() && job.get().state() == UploadJournal.State.UPLOADING) {
+        journal.pending(filename);
+      }
+    } catch (IOException e) {
+      System.err.printf("‼ [%s] Could not journal %s: %s%n", channelName, filename, e.getMessage());
+    }
+  }
+
+  private void dropSession(String filename) {
+    try {
+      if (journal.get(filename).map(UploadJournal.Job::uploadUrl).isPresent()) {
+        journal.uploadSession(filename, null);
+      }
+    } catch (IOException e) {
+      System.err.printf("‼ [%s] Could not journal %s: %s%n", channelName, filename, e.getMessage());
+    }
+  }
 
-        scheduledVideos.add(vid);  // mark in-flight
+  private void rescheduleBatchForTomorrow(String failedFilename) {
+    try {
+      // the failed video plus everything queued behind it, in slot order
+      List<UploadJournal.Job> batch = journal.jobs().stream()
+        .filter(j -> j.filename().equals(failedFilename) || j.state() == UploadJournal.State.SCHEDULED)
+        .toList();
 
-        // update only first rescheduled
-        if (i == idx) {
-          nextScheduledMap.put(channelName, when);
-        }
+      Instant base = Instant.now().plus(Duration.ofDays(1));
+      for (int i = 0; i < batch.size(); i++) {
+        String filename = batch.get(i).filename();
+        Path vid = pendingDir.resolve(filename).toAbsolutePath().normalize();
+        Instant when = base.plus(SPACING.multipliedBy(i));
+
+        // the new slot replaces the old one; the old task sees that and exits
+        journal.scheduled(filename, when);
+        arm(vid, when);
 
         System.out.printf("🔁 Rescheduled %s for %s%n",
-          vid.getFileName(),
+          filename,
           when.atZone(ZoneId.systemDefault()).toLocalTime().withSecond(0).withNano(0));
       }
     } catch (Exception ex) {
@@ -239,16 +341,20 @@ public class ChannelScheduler {
     }
   }
 
-  public void uploadAllNow() throws IOException {
-    List<Path> videos = Files.list(pendingDir)
-      .filter(p -> p.toString().endsWith(".mp4"))
-      .map(Path::toAbsolutePath)
-      .map(Path::normalize)
-      .sorted(Comparator.naturalOrder())
-      .collect(Collectors.toList());
+  public void uploadAllNow() {
+    List<Path> videos = pending.snapshot();
 
     for (Path video : videos) {
-      uploadAndArchive(video, Instant.now());
+      String filename = video.getFileName().toString();
+      if (journal.isActive(filename)) continue;
+      Instant now = Instant.now();
+      try {
+        journal.scheduled(filename, now);
+      } catch (IOException e) {
+        System.err.printf("‼ [%s] Could not journal %s: %s%n", channelName, filename, e.getMessage());
+        return;
+      }
+      uploadAndArchive(video, now);
     }
   }
 }
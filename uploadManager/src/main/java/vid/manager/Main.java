@@ -1,21 +1,17 @@
 package vid.manager;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
 
 import vid.builder.AppPaths;
 import vid.builder.Env;
@@ -26,11 +22,16 @@ import vid.builder.Env;
  * <p>For every configured channel this class:</p>
  * <ul>
  *   <li>Watches the {@code Channels/&lt;name&gt;/pending} folder for finished
- *       MP4s.</li>
+ *       MP4s through a {@link PendingQueue}, so new videos are scheduled
+ *       within seconds of being rendered.</li>
  *   <li>Triggers {@link vid.builder.Main} to generate additional videos when
  *       the pending queue drops below five clips.</li>
  *   <li>Delegates actual uploading and archiving to a per-channel
- *       {@link ChannelScheduler}, spacing uploads five hours apart.</li>
+ *       {@link ChannelScheduler}, spacing uploads five hours apart. Its plan
+ *       lives in an {@link UploadJournal}, so a restart carries on with it.</li>
+ *   <li>Keeps upload times in a {@link TimingWheel} and runs due uploads and
+ *       generation on separate bounded pools, so a long render never holds
+ *       up an upload.</li>
  * </ul>
  *
  * <p>Credentials are read through {@link Env} so they may be supplied from a
@@ -47,8 +48,23 @@ public class Main {
                               String clientSecret,
                               String email) {}
 
-  private static final Map<String, Instant> nextScheduledMap = new ConcurrentHashMap<>();
-  private static final Set<Path> scheduledVideos = ConcurrentHashMap.newKeySet();
+  private static final Map<String, ChannelScheduler> schedulers = new ConcurrentHashMap<>();
+
+  /** Minutes between full rescans of the pending folders (the watcher covers the time in between). */
+  private static final long RECONCILE_MINUTES =
+    Long.parseLong(Env.get("PENDING_RECONCILE_MIN", "15"));
+
+  /** Uploads that may run at the same time across all channels. */
+  private static final int UPLOAD_WORKERS =
+    Integer.parseInt(Env.get("UPLOAD_WORKERS", "4"));
+
+  /** {@link vid.builder.Main} runs that may generate videos at the same time. */
+  private static final int GENERATION_WORKERS =
+    Integer.parseInt(Env.get("GENERATION_WORKERS", "1"));
+
+  /** Resolution of the upload timing wheel. */
+  private static final long TICK_MS =
+    Long.parseLong(Env.get("SCHEDULER_TICK_MS", "1000"));
 
   public static void main(String[] args) throws Exception {
     // Root folder that holds one subdirectory per channel.
@@ -83,41 +99,53 @@ public class Main {
       )
       // Add more channels as needed; remember to mirror the new keys in .env.
     );
-   ScheduledExecutorService executor = Executors.newScheduledThreadPool(channels.size()+1);
-    AtomicLong timeUntilNextCheck = new AtomicLong(15*60);
+    // Upload times are kept by the timing wheel; due uploads and generation
+    // runs get pools of their own, so a long render never holds up an upload
+    // and the housekeeping pool stays small however many channels there are.
+    TimingWheel wheel = new TimingWheel(TICK_MS);
+    ExecutorService uploads = pool("upload", UPLOAD_WORKERS);
+    ExecutorService generation = pool("generation", GENERATION_WORKERS);
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+    AtomicLong timeUntilNextCheck = new AtomicLong(RECONCILE_MINUTES*60);
 
     for (var entry : channels.entrySet()) {
       String channelName = entry.getKey();
       ChannelConfig cfg = entry.getValue();
       AtomicBoolean running = new AtomicBoolean(false);
+      AtomicBoolean generating = new AtomicBoolean(false);
+
+      Path pendingDir = channelsRoot.resolve(channelName).resolve("pending");
+      PendingQueue pending = new PendingQueue(channelName, pendingDir, executor);
 
       ChannelScheduler scheduler = new ChannelScheduler(
-        channelsRoot, channelName, cfg, executor, nextScheduledMap, scheduledVideos
+        channelsRoot, channelName, cfg, pending, wheel, uploads
       );
+      schedulers.put(channelName, scheduler);
+      // re-arm the uploads planned by the previous run
+      scheduler.resume();
 
-      executor.scheduleWithFixedDelay(() -> {
+      Runnable check = () -> {
         if (!running.compareAndSet(false, true)) {
           System.out.println("⏳ Still processing " + channelName + ", skipping.");
           return;
         }
         try {
           // ——— PRE-FILL if pending < 5 ———
-          Path pendingDir = channelsRoot.resolve(channelName).resolve("pending");
-          long pendingCount = Files.list(pendingDir)
-                                   .filter(p -> p.toString().endsWith(".mp4"))
-                                   .count();
+          int pendingCount = pending.size();
 
-          if (pendingCount < 5) {
+          if (pendingCount < 5 && generating.compareAndSet(false, true)) {
             System.out.printf(" [%s] only %d pending videos → generating 3 more…%n",
                               channelName, pendingCount);
             // launch generation in its own task so we don't block scheduling
-            executor.submit(() -> {
+            generation.submit(() -> {
               try {
                 vid.builder.Main.main(new String[]{ channelName, "3" });
               } catch (Exception e) {
                 System.err.printf(" vidBuilder generation failed for %s: %s%n",
                                   channelName, e.getMessage());
                 e.printStackTrace();
+              } finally {
+                generating.set(false);
               }
             });
           }
@@ -126,13 +154,21 @@ public class Main {
           System.out.println(" Checking for new videos in " + channelName);
           scheduler.scheduleAll();
 
-        } catch (IOException e) {
+        } catch (RuntimeException e) {
           System.err.println("🚨 Failed for " + channelName + ": " + e.getMessage());
         } finally {
           running.set(false);
-          timeUntilNextCheck.set(15*60);
         }
-      }, 0, 15, TimeUnit.MINUTES);
+      };
+
+      // react to files appearing in / leaving pending/ within seconds …
+      pending.start(check);
+      // … and rescan every so often in case the watcher missed something
+      executor.scheduleWithFixedDelay(() -> {
+        pending.reconcile();
+        check.run();
+        timeUntilNextCheck.set(RECONCILE_MINUTES*60);
+      }, 0, RECONCILE_MINUTES, TimeUnit.MINUTES);
     }
 
     // Countdown & status (unchanged)
@@ -143,50 +179,33 @@ public class Main {
       } else {
         timeUntilNextCheck.set(0);
       }
-        for (var entry : channels.entrySet()) {
+      for (var entry : channels.entrySet()) {
         String channelName = entry.getKey();
-        Path pendingDir = AppPaths.pendingDir(channelName);
-
-        try {
-          List<Path> videos = Files.list(pendingDir)
-            .filter(p -> p.toString().endsWith(".mp4"))
-            .sorted()
-            .collect(Collectors.toList());
-
-          Optional<Path> scheduledNext = videos.stream()
-            .map(p -> p.toAbsolutePath().normalize())
-            .filter(scheduledVideos::contains)
-            .findFirst();
-
-          if (scheduledNext.isPresent()) {
-            Path nextVideo = scheduledNext.get();
-            Instant nextUploadTime = nextScheduledMap.getOrDefault(channelName, Instant.now());
-            long minutesUntilUpload = Math.max(Duration.between(Instant.now(), nextUploadTime).toMinutes(), 0);
-
-            System.out.printf(
-              "📺 [%s] Next upload in %d min at %s: %s%n",
-              channelName,
-              minutesUntilUpload,
-              nextUploadTime.atZone(ZoneId.systemDefault()).toLocalTime().withSecond(0).withNano(0),
-              nextVideo.getFileName()
-            );
-          } else {
-            Instant nextUploadTime = nextScheduledMap.get(channelName);
-            if (nextUploadTime != null) {
-              long minutes = Math.max(Duration.between(Instant.now(), nextUploadTime).toMinutes(), 0);
-              System.out.printf(" [%s] Scheduled upload in %d min at %s (video not yet assigned)%n",
-                channelName,
-                minutes,
-                nextUploadTime.atZone(ZoneId.systemDefault()).toLocalTime().withSecond(0).withNano(0));
-            }
-          }
 
-        } catch (IOException e) {
-          System.err.printf("Error checking [%s]: %s%n", channelName, e.getMessage());
-        }
+        schedulers.get(channelName).nextUpload().ifPresent(next -> {
+          Instant nextUploadTime = next.scheduledAt();
+          long minutesUntilUpload = Math.max(Duration.between(Instant.now(), nextUploadTime).toMinutes(), 0);
+
+          System.out.printf(
+            "📺 [%s] Next upload in %d min at %s: %s%n",
+            channelName,
+            minutesUntilUpload,
+            nextUploadTime.atZone(ZoneId.systemDefault()).toLocalTime().withSecond(0).withNano(0),
+            next.filename()
+          );
+        });
       }
     }, 1, 1, TimeUnit.MINUTES);
 
     executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
   }
+
+  private static ExecutorService pool(String name, int threads) {
+    AtomicInteger seq = new AtomicInteger();
+    return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+      Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+package vid.manager;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import vid.builder.Env;
+
+/**
+ * Live, sorted view of the MP4s waiting in one channel's {@code pending/}
+ * folder.
+ *
+ * <p>The folder is registered with a {@link WatchService} shared by all
+ * channels, so new, moved and deleted files are noticed within seconds
+ * without listing the directory. The renderer moves finished videos in
+ * atomically; as a safety net for files copied in by other means, a file
+ * only counts as ready once it has not been modified for
+ * {@code PENDING_SETTLE_SEC}, so a video still being written into the
+ * folder is never picked up half-written. A full
+ * {@link #reconcile()} corrects anything the watcher missed (for example an
+ * event overflow) and is also run on a timer as a safety net.</p>
+ *
+ * <p>Whenever the set changes the callback given to {@link #start(Runnable)}
+ * runs on the scheduler's executor; bursts of events are coalesced into one
+ * call.</p>
+ */
+public final class PendingQueue {
+  private static final long SETTLE_MS =
+    TimeUnit.SECONDS.toMillis(Long.parseLong(Env.get("PENDING_SETTLE_SEC", "10")));
+
+  private static final Map<WatchKey, PendingQueue> BY_KEY = new ConcurrentHashMap<>();
+  private static WatchService watchService;
+
+  private final String channelName;
+  private final Path dir;
+  private final ScheduledExecutorService executor;
+  private volatile Runnable onChange = () -> { };
+  private final NavigableSet<Path> ready = new ConcurrentSkipListSet<>();
+  private final Map<Path, ScheduledFuture<?>> settling = new ConcurrentHashMap<>();
+  private final AtomicBoolean notifyQueued = new AtomicBoolean();
+  private volatile WatchKey key;
+
+  public PendingQueue(String channelName,
+                      Path dir,
+                      ScheduledExecutorService executor) {
+    this.channelName = channelName;
+    this.dir         = dir.toAbsolutePath().normalize();
+    this.executor    = executor;
+  }
+
+  /**
+   * Starts watching the folder and loads what is already in it. Videos
+   * that have not been touched for the settle time count as ready straight
+   * away.
+   */
+  public void start(Runnable onChange) throws IOException {
+    this.onChange = onChange;
+    watch();
+    reconcile();
+  }
+
+  /** Ready videos, oldest name first. */
+  public List<Path> snapshot() {
+    return List.copyOf(ready);
+  }
+
+  /** Number of ready videos. */
+  public int size() {
+    return ready.size();
+  }
+
+  public boolean isEmpty() {
+    return ready.isEmpty();
+  }
+
+  /**
+   * Rescans the folder and brings the set in line with it. Cheap enough to
+   * run every few minutes; the watcher keeps the set current in between.
+   */
+  public void reconcile() {
+    if (key == null || !key.isValid()) {
+      try {
+        watch();
+      } catch (IOException e) {
+        System.err.printf("⚠️ [%s] Could not watch %s: %s%n", channelName, dir, e.getMessage());
+      }
+    }
+
+    Set<Path> onDisk = new HashSet<>();
+    try (Stream<Path> files = Files.list(dir)) {
+      onDisk = files
+        .filter(PendingQueue::isVideo)
+        .map(p -> p.toAbsolutePath().normalize())
+        .collect(Collectors.toSet());
+    } catch (NoSuchFileException e) {
+      // folder removed; everything in it is gone
+    } catch (IOException e) {
+      System.err.printf("⚠️ [%s] Could not scan %s: %s%n", channelName, dir, e.getMessage());
+      return;
+    }
+
+    boolean changed = ready.retainAll(onDisk);
+    for (Path video : onDisk) {
+      if (!ready.contains(video) && !settling.containsKey(video)) {
+        checkSettled(video);
+      }
+    }
+    if (changed) notifyChange();
+  }
+
+  // Events ------------------------------------------------------------------
+
+  private void onEvent(WatchEvent.Kind<?> kind, Path video) {
+    if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+      ScheduledFuture<?> pending = settling.remove(video);
+      if (pending != null) pending.cancel(false);
+      if (ready.remove(video)) notifyChange();
+    } else {
+      // created, moved in or still being written
+      settle(video);
+    }
+  }
+
+  /** Marks {@code video} ready once it has stopped changing. */
+  private void settle(Path video) {
+    settling.computeIfAbsent(video, v ->
+      executor.schedule(() -> checkSettled(v), SETTLE_MS, TimeUnit.MILLISECONDS));
+  }
+
+  private void checkSettled(Path video) {
+    settling.remove(video);
+    long quietFor;
+    try {
+      quietFor = System.currentTimeMillis() - Files.getLastModifiedTime(video).toMillis();
+    } catch (IOException e) {
+      // gone again before it settled
+      return;
+    }
+    if (quietFor < SETTLE_MS) {
+      settling.computeIfAbsent(video, v ->
+        executor.schedule(() -> checkSettled(v), SETTLE_MS - quietFor, TimeUnit.MILLISECONDS));
+      return;
+    }
+    if (ready.add(video)) {
+      System.out.printf("📥 [%s] Ready: %s%n", channelName, video.getFileName());
+      notifyChange();
+    }
+  }
+
+  /** Runs {@code onChange} once for any burst of changes. */
+  private void notifyChange() {
+    if (notifyQueued.compareAndSet(false, true)) {
+      executor.schedule(() -> {
+        notifyQueued.set(false);
+        onChange.run();
+      }, 1, TimeUnit.SECONDS);
+    }
+  }
+
+  private static boolean isVideo(Path p) {
+    return p.getFileName().toString().endsWith(".mp4");
+  }
+
+  // Shared watcher ----------------------------------------------------------
+
+  private void watch() throws IOException {
+    Files.createDirectories(dir);
+    WatchKey k = dir.register(watchService(),
+      StandardWatchEventKinds.ENTRY_CREATE,
+      StandardWatchEventKinds.ENTRY_MODIFY,
+      StandardWatchEventKinds.ENTRY_DELETE);
+    BY_KEY.put(k, this);
+    key = k;
+  }
+
+  private static synchronized WatchService watchService() throws IOException {
+    if (watchService == null) {
+      watchService = FileSystems.getDefault().newWatchService();
+      Thread t = new Thread(PendingQueue::watchLoop, "pending-watch");
+      t.setDaemon(true);
+      t.start();
+    }
+    return watchService;
+  }
+
+  private static void watchLoop() {
+    while (true) {
+      WatchKey key;
+      try {
+        key = watchService.take();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+
+      PendingQueue queue = BY_KEY.get(key);
+      if (queue != null) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            queue.executor.execute(queue::reconcile);
+            continue;
+          }
+          Path video = queue.dir.resolve((Path) event.context());
+          if (isVideo(video)) {
+            queue.onEvent(event.kind(), video);
+          }
+        }
+      }
+
+      if (!key.reset()) {
+        // folder deleted — re-create and re-register on the next reconcile
+        BY_KEY.remove(key);
+        System.err.println("⚠️ Stopped watching " + (queue == null ? key.watchable() : queue.dir));
+      }
+    }
+  }
+}
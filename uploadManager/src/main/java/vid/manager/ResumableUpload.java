@@ -0,0 +1,212 @@
+package vid.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.Video;
+
+/**
+ * One YouTube resumable upload session, driven chunk by chunk.
+ *
+ * <p>{@link #start} opens a session and returns its URL before any bytes
+ * are sent, so the caller can record it; {@link #resume} asks YouTube how
+ * much of an earlier session it already has. A session that completed
+ * before a crash reports the finished {@link Video}, so it is never posted
+ * twice. Sessions stay valid for about a week; an expired one resumes as
+ * empty and the caller starts over.</p>
+ *
+ * <p>A chunk that fails with a transport error or {@code 5xx} is retried
+ * with backoff from whatever offset YouTube reports it has. Other error
+ * answers are thrown as {@link GoogleJsonResponseException}, as the client
+ * library would.</p>
+ */
+public final class ResumableUpload {
+  private static final String ENDPOINT =
+      "https://www.googleapis.com/upload/youtube/v3/videos?uploadType=resumable&part=snippet,status";
+  private static final int MAX_ATTEMPTS = 5;
+
+  private final YouTube youtube;
+  private final File file;
+  private final long size;
+  private final int chunkBytes;
+  private final String url;
+  private long offset;
+  private Video result;
+
+  private ResumableUpload(YouTube youtube, File file, int chunkBytes, String url) {
+    this.youtube    = youtube;
+    this.file       = file;
+    this.size       = file.length();
+    this.chunkBytes = chunkBytes;
+    this.url        = url;
+  }
+
+  /** Opens a new session for {@code file} with {@code metadata}. */
+  public static ResumableUpload start(YouTube youtube, File file, int chunkBytes, Video metadata)
+      throws IOException {
+    HttpRequest request = request(youtube, "POST", ENDPOINT,
+        new JsonHttpContent(youtube.getJsonFactory(), metadata));
+    request.getHeaders()
+        .set("X-Upload-Content-Type", "video/mp4")
+        .set("X-Upload-Content-Length", file.length());
+    HttpResponse response = request.execute();
+    try {
+      if (!response.isSuccessStatusCode()) {
+        throw GoogleJsonResponseException.from(youtube.getJsonFactory(), response);
+      }
+      String location = response.getHeaders().getLocation();
+      if (location == null) {
+        throw new IOException("YouTube opened no upload session for " + file.getName());
+      }
+      return new ResumableUpload(youtube, file, chunkBytes, location);
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  /**
+   * Reopens the session at {@code url}, or returns empty if YouTube no
+   * longer knows it.
+   */
+  public static Optional<ResumableUpload> resume(YouTube youtube, File file, int chunkBytes, String url)
+      throws IOException, InterruptedException {
+    ResumableUpload upload = new ResumableUpload(youtube, file, chunkBytes, url);
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return upload.queryStatus() ? Optional.of(upload) : Optional.empty();
+      } catch (GoogleJsonResponseException e) {
+        throw e;
+      } catch (IOException e) {
+        if (attempt >= MAX_ATTEMPTS) throw e;
+        backoff(attempt);
+      }
+    }
+  }
+
+  public String url() {
+    return url;
+  }
+
+  /** Bytes YouTube has confirmed so far. */
+  public long offset() {
+    return offset;
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public boolean isComplete() {
+    return result != null;
+  }
+
+  /** The uploaded video, once {@link #isComplete()}. */
+  public Video result() {
+    return result;
+  }
+
+  /** Sends the next chunk, retrying transient failures from YouTube's offset. */
+  public void sendNextChunk() throws IOException, InterruptedException {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        send();
+        return;
+      } catch (GoogleJsonResponseException e) {
+        throw e;
+      } catch (IOException e) {
+        if (attempt >= MAX_ATTEMPTS) throw e;
+        System.err.printf("⚠️ Chunk of %s failed (%s), retrying%n", file.getName(), e.getMessage());
+        backoff(attempt);
+        try {
+          if (!queryStatus()) {
+            throw new IOException("Upload session for " + file.getName() + " expired");
+          }
+        } catch (GoogleJsonResponseException fatal) {
+          throw fatal;
+        } catch (IOException again) {
+          // still unreachable; the next attempt resends from the last known offset
+        }
+        if (isComplete()) return;
+      }
+    }
+  }
+
+  private void send() throws IOException {
+    int n = (int) Math.min(chunkBytes, size - offset);
+    byte[] chunk = new byte[n];
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      in.seek(offset);
+      in.readFully(chunk);
+    }
+    HttpRequest request = request(youtube, "PUT", url, new ByteArrayContent("video/mp4", chunk));
+    request.getHeaders().setContentRange(
+        "bytes " + offset + "-" + (offset + n - 1) + "/" + size);
+    if (!handle(request.execute())) {
+      throw new IOException("Upload session for " + file.getName() + " expired");
+    }
+  }
+
+  /** Asks how much of the file YouTube has; {@code false} if the session is gone. */
+  private boolean queryStatus() throws IOException {
+    HttpRequest request = request(youtube, "PUT", url, new EmptyContent());
+    request.getHeaders().setContentRange("bytes */" + size);
+    return handle(request.execute());
+  }
+
+  /**
+   * Applies a session response: {@code 200}/{@code 201} completes the upload,
+   * {@code 308} moves the offset. Returns {@code false} for a session that
+   * no longer exists.
+   */
+  private boolean handle(HttpResponse response) throws IOException {
+    try {
+      int status = response.getStatusCode();
+      if (status == 200 || status == 201) {
+        result = response.parseAs(Video.class);
+        offset = size;
+        return true;
+      }
+      if (status == 308) {
+        // "bytes=0-N": everything up to N arrived; no Range means nothing did
+        String range = response.getHeaders().getRange();
+        offset = range == null ? 0 : Long.parseLong(range.substring(range.lastIndexOf('-') + 1)) + 1;
+        return true;
+      }
+      if (status == 404 || status == 410) {
+        return false;
+      }
+      if (status >= 500) {
+        throw new IOException("HTTP " + status);
+      }
+      throw GoogleJsonResponseException.from(youtube.getJsonFactory(), response);
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  private static HttpRequest request(YouTube youtube, String method, String url, HttpContent content)
+      throws IOException {
+    return youtube.getRequestFactory()
+        .buildRequest(method, new GenericUrl(url), content)
+        .setParser(new JsonObjectParser(youtube.getJsonFactory()))
+        .setFollowRedirects(false) // 308 is the protocol's "resume incomplete", not a redirect
+        .setThrowExceptionOnExecuteError(false);
+  }
+
+  private static void backoff(int attempt) throws InterruptedException {
+    TimeUnit.SECONDS.sleep(1L << Math.min(attempt - 1, 5));
+  }
+}
@@ -0,0 +1,162 @@
+package vid.manager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hierarchical timing wheel that fires tasks at wall-clock times and hands
+ * them to an executor of the caller's choice.
+ *
+ * <p>Time advances in ticks of {@code tickMs}. There are {@value #LEVELS}
+ * wheels of {@value #SLOTS} slots each: level 0 covers the next 64 ticks one
+ * tick per slot, level 1 the next 64² ticks 64 ticks per slot, and so on, so
+ * with one-second ticks the wheels reach about 194 days (anything later
+ * waits in the outermost wheel and is re-filed when that slot comes round).
+ * Scheduling appends to a lock-free queue; the single wheel thread files new
+ * timers into their slot, moves a higher slot's timers one level down when
+ * the lower wheel wraps, and fires level-0 slots as they come due. The
+ * per-tick cost is independent of how many timers are waiting, so
+ * thousands of channels with hours-away uploads cost the same as one.</p>
+ *
+ * <p>The wheel only keeps time — every task runs on the executor passed to
+ * {@link #schedule(Runnable, Instant, Executor)}, so a slow task can never
+ * delay the next one that comes due.</p>
+ */
+public final class TimingWheel implements AutoCloseable {
+  private static final int LEVELS = 4;
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int MASK = SLOTS - 1;
+  /** Furthest a timer can be filed ahead; later ones are re-filed when reached. */
+  private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+  private static final AtomicInteger SEQ = new AtomicInteger();
+
+  /** Handle to a scheduled task. */
+  public static final class Timeout {
+    private final long deadlineTick;
+    private final Runnable task;
+    private final Executor executor;
+    private volatile boolean cancelled;
+
+    private Timeout(long deadlineTick, Runnable task, Executor executor) {
+      this.deadlineTick = deadlineTick;
+      this.task         = task;
+      this.executor     = executor;
+    }
+
+    /** Stops the task from firing if it has not fired yet. */
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+
+  private final long tickNanos;
+  private final long origin = System.nanoTime();
+  private final List<List<List<Timeout>>> wheels = new ArrayList<>();
+  private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+  private final Thread worker;
+  private volatile boolean running = true;
+  /** Ticks processed so far; only touched by the wheel thread. */
+  private long tick;
+
+  public TimingWheel(long tickMs) {
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+    for (int level = 0; level < LEVELS; level++) {
+      List<List<Timeout>> wheel = new ArrayList<>(SLOTS);
+      for (int slot = 0; slot < SLOTS; slot++) {
+        wheel.add(new ArrayList<>());
+      }
+      wheels.add(wheel);
+    }
+    worker = new Thread(this::run, "timing-wheel-" + SEQ.incrementAndGet());
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /** Runs {@code task} on {@code executor} at (or within one tick after) {@code due}. */
+  public Timeout schedule(Runnable task, Instant due, Executor executor) {
+    long delayNanos = Math.max(0, Duration.between(Instant.now(), due).toNanos());
+    long elapsed = System.nanoTime() + delayNanos - origin;
+    long deadline = (elapsed + tickNanos - 1) / tickNanos;
+    Timeout timeout = new Timeout(deadline, task, executor);
+    incoming.add(timeout);
+    return timeout;
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    worker.interrupt();
+  }
+
+  // Wheel thread -------------------------------------------------------------
+
+  private void run() {
+    while (running) {
+      long sleep = origin + (tick + 1) * tickNanos - System.nanoTime();
+      if (sleep > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleep);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+      tick++;
+
+      for (Timeout t; (t = incoming.poll()) != null; ) {
+        file(t);
+      }
+      // when a lower wheel wraps, bring the matching higher slot down a level
+      for (int level = LEVELS - 1; level > 0; level--) {
+        if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+          List<Timeout> slot = slotFor(level, tick);
+          List<Timeout> moving = new ArrayList<>(slot);
+          slot.clear();
+          moving.forEach(this::file);
+        }
+      }
+      List<Timeout> due = slotFor(0, tick);
+      List<Timeout> firing = new ArrayList<>(due);
+      due.clear();
+      firing.forEach(this::fire);
+    }
+  }
+
+  /** Puts {@code t} in the lowest wheel that reaches its deadline, or fires it if already due. */
+  private void file(Timeout t) {
+    if (t.cancelled) return;
+    long delta = t.deadlineTick - tick;
+    if (delta <= 0) {
+      fire(t);
+      return;
+    }
+    long target = delta < SPAN ? t.deadlineTick : tick + SPAN - 1;
+    for (int level = 0; level < LEVELS; level++) {
+      if (target - tick < 1L << (SLOT_BITS * (level + 1)) || level == LEVELS - 1) {
+        slotFor(level, target).add(t);
+        return;
+      }
+    }
+  }
+
+  private List<Timeout> slotFor(int level, long atTick) {
+    return wheels.get(level).get((int) ((atTick >>> (SLOT_BITS * level)) & MASK));
+  }
+
+  private void fire(Timeout t) {
+    if (t.cancelled) return;
+    try {
+      t.executor.execute(t.task);
+    } catch (RejectedExecutionException e) {
+      System.err.println("⚠️ Timer task rejected: " + e.getMessage());
+    }
+  }
+}
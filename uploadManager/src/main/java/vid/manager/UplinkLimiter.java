@@ -0,0 +1,170 @@
+package vid.manager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import vid.builder.Env;
+
+/**
+ * Global cap on concurrent uploads that adapts to the measured uplink.
+ *
+ * <p>Every upload holds a {@link Ticket} while it sends bytes and reports
+ * its progress on it. Once per {@code UPLOAD_PROBE_SEC} window the limiter
+ * looks at total throughput. While uploads are queued it lets one more
+ * start; if that did not raise total throughput by at least 10 % the uplink
+ * is saturated, so it takes the slot back and holds there for a few windows
+ * before probing again. An extra slot that no upload filled during its
+ * window is taken back as well, so the limit only grows once it has been
+ * measured. If any single upload averages less than
+ * {@code UPLOAD_MIN_KBPS} the limit is lowered, so uploads are never spread
+ * so thin that one of them stalls. Waiting uploads are admitted in arrival
+ * order.</p>
+ */
+public final class UplinkLimiter {
+  private static final long WINDOW_SEC =
+    Long.parseLong(Env.get("UPLOAD_PROBE_SEC", "20"));
+  private static final long MIN_FLOW_BPS =
+    Long.parseLong(Env.get("UPLOAD_MIN_KBPS", "256")) * 1024;
+  private static final int HOLD_WINDOWS = 5;
+
+  /** One admitted upload. Close it when the upload ends. */
+  public final class Ticket implements AutoCloseable {
+    private final long started = System.nanoTime();
+    private long bytes;
+    private long windowStartBytes;
+    private boolean closed;
+
+    private Ticket() {
+    }
+
+    /** Reports the total bytes this upload has sent so far. */
+    public void progress(long totalBytes) {
+      synchronized (UplinkLimiter.this) {
+        bytes = totalBytes;
+      }
+    }
+
+    @Override
+    public void close() {
+      synchronized (UplinkLimiter.this) {
+        if (closed) return;
+        closed = true;
+        windowBytes += bytes - windowStartBytes;
+        tickets.remove(this);
+        UplinkLimiter.this.notifyAll();
+      }
+    }
+  }
+
+  private final int min;
+  private final int max;
+  private final Set<Ticket> tickets = new HashSet<>();
+  private final Set<Long> abandoned = new HashSet<>();
+  private int limit;
+  private long issued;
+  private long admitted;
+
+  /** Bytes sent in the current window by uploads that already finished. */
+  private long windowBytes;
+  private double lastRate;
+  private boolean probing;
+  private int hold;
+
+  public UplinkLimiter(int min, int max) {
+    this.min   = Math.max(1, min);
+    this.max   = Math.max(this.min, max);
+    this.limit = this.min;
+
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "uplink-limiter");
+      t.setDaemon(true);
+      return t;
+    });
+    timer.scheduleAtFixedRate(this::adjust, WINDOW_SEC, WINDOW_SEC, TimeUnit.SECONDS);
+  }
+
+  /** Waits for a free slot, first come first served. */
+  public synchronized Ticket acquire() throws InterruptedException {
+    long mine = issued++;
+    try {
+      while (mine != admitted || tickets.size() >= limit) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      abandoned.add(mine);
+      skipAbandoned();
+      notifyAll();
+      throw e;
+    }
+    admitted++;
+    skipAbandoned();
+
+    Ticket ticket = new Ticket();
+    tickets.add(ticket);
+    notifyAll();
+    return ticket;
+  }
+
+  /** Current number of uploads allowed at once. */
+  public synchronized int limit() {
+    return limit;
+  }
+
+  private void skipAbandoned() {
+    while (abandoned.remove(admitted)) {
+      admitted++;
+    }
+  }
+
+  private synchronized void adjust() {
+    long total = windowBytes;
+    boolean stalled = false;
+    long now = System.nanoTime();
+    for (Ticket t : tickets) {
+      total += t.bytes - t.windowStartBytes;
+      t.windowStartBytes = t.bytes;
+      // progress arrives a chunk at a time, so judge each upload by its
+      // average since it started rather than by this window alone
+      double secs = (now - t.started) / 1e9;
+      if (secs >= 2 * WINDOW_SEC && t.bytes / secs < MIN_FLOW_BPS) stalled = true;
+    }
+    windowBytes = 0;
+    double rate = total / (double) WINDOW_SEC;
+    boolean waiting = issued - admitted - abandoned.size() > 0;
+    int before = limit;
+
+    if (stalled && limit > min) {
+      // someone is crawling — fewer uploads, each with a bigger share
+      limit--;
+      probing = false;
+      hold = HOLD_WINDOWS;
+    } else if (probing && tickets.size() >= limit && rate < lastRate * 1.10) {
+      // the extra upload did not buy throughput: the uplink is full
+      limit = Math.max(min, limit - 1);
+      probing = false;
+      hold = HOLD_WINDOWS;
+    } else if (probing && tickets.size() < limit) {
+      // nobody took the extra slot, so it was never measured — give it back
+      limit = Math.max(min, limit - 1);
+      probing = false;
+    } else if (hold > 0) {
+      hold--;
+      probing = false;
+    } else if (waiting && tickets.size() >= limit && limit < max) {
+      limit++;
+      probing = true;
+    } else {
+      probing = false;
+    }
+    lastRate = rate;
+
+    if (limit != before) {
+      System.out.printf("📶 Uplink %.1f MB/s over %d uploads → limit %d%n",
+        rate / (1024 * 1024), tickets.size(), limit);
+      notifyAll();
+    }
+  }
+}
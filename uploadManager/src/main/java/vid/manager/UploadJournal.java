@@ -0,0 +1,297 @@
+package vid.manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import vid.builder.Env;
+
+/**
+ * Durable record of where every video of one channel is in the upload
+ * process.
+ *
+ * <p>Each change is appended to {@code upload_journal.wal} and forced to
+ * disk before the step it describes is carried out. A record always holds
+ * the job's complete state rather than a delta, so replaying a record twice
+ * changes nothing. After {@code JOURNAL_SNAPSHOT_EVERY} records the
+ * unfinished jobs are written to {@code upload_journal.snapshot} (temp file,
+ * then atomic move) and the log is truncated. Opening the journal reads the
+ * snapshot and replays the log in one sequential pass; a torn last line
+ * from a crash is ignored.</p>
+ *
+ * <p>A job moves through
+ * {@link State#PENDING} → {@link State#SCHEDULED} → {@link State#UPLOADING}
+ * → {@link State#UPLOADED} → {@link State#ARCHIVED}; archived and forgotten
+ * jobs are dropped from memory. The URL of a started YouTube upload session
+ * is recorded before any bytes are sent and kept until YouTube confirms
+ * the video, so an interrupted upload is continued (or found to be
+ * complete) instead of posted a second time. {@link ChannelScheduler#resume()}
+ * uses the recovered states to re-arm scheduled uploads and finish
+ * interrupted ones.</p>
+ */
+public final class UploadJournal implements AutoCloseable {
+  private static final int SNAPSHOT_EVERY =
+    Integer.parseInt(Env.get("JOURNAL_SNAPSHOT_EVERY", "1000"));
+
+  private static final String FORGET = "FORGET";
+  private static final String NONE = "-";
+
+  public enum State {
+    /** In {@code pending/}, waiting for an upload slot. */
+    PENDING,
+    /** Has an upload slot. */
+    SCHEDULED,
+    /** Upload started but not confirmed by YouTube. */
+    UPLOADING,
+    /** On YouTube; not yet moved to {@code archive/} and logged in the history. */
+    UPLOADED,
+    /** Done. */
+    ARCHIVED
+  }
+
+  /**
+   * One video's state. {@code scheduledAt} is set from {@link State#SCHEDULED}
+   * on, {@code uploadUrl} once a resumable upload session has been opened
+   * and {@code videoId} once YouTube has confirmed the upload.
+   */
+  public record Job(String filename, State state, Instant scheduledAt, String videoId, String uploadUrl) {
+    Job with(State newState) {
+      return new Job(filename, newState, scheduledAt, videoId, uploadUrl);
+    }
+  }
+
+  private final Path walFile;
+  private final Path snapshotFile;
+  private final Map<String, Job> jobs = new HashMap<>();
+  private final FileChannel wal;
+  private int walRecords;
+
+  public UploadJournal(Path channelDir) throws IOException {
+    this.walFile      = channelDir.resolve("upload_journal.wal");
+    this.snapshotFile = channelDir.resolve("upload_journal.snapshot");
+
+    Files.createDirectories(channelDir);
+    replay(snapshotFile);
+    walRecords = replay(walFile);
+    wal = FileChannel.open(walFile,
+      StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    if (walRecords > 0) snapshot();
+  }
+
+  // Queries -----------------------------------------------------------------
+
+  public synchronized Optional<Job> get(String filename) {
+    return Optional.ofNullable(jobs.get(filename));
+  }
+
+  /** Every unfinished job, earliest slot first. */
+  public synchronized List<Job> jobs() {
+    return jobs.values().stream()
+      .sorted(Comparator.comparing(Job::scheduledAt, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(Job::filename))
+      .toList();
+  }
+
+  /** Whether {@code filename} has a slot or is being uploaded right now. */
+  public synchronized boolean isActive(String filename) {
+    Job job = jobs.get(filename);
+    return job != null && job.state() != State.PENDING;
+  }
+
+  /** The next job waiting for its slot. */
+  public synchronized Optional<Job> nextScheduled() {
+    return jobs.values().stream()
+      .filter(j -> j.state() == State.SCHEDULED)
+      .min(Comparator.comparing(Job::scheduledAt));
+  }
+
+  /** The latest slot handed out so far. */
+  public synchronized Optional<Instant> lastScheduled() {
+    return jobs.values().stream()
+      .filter(j -> j.scheduledAt() != null && j.state() != State.PENDING)
+      .map(Job::scheduledAt)
+      .max(Comparator.naturalOrder());
+  }
+
+  // Transitions -------------------------------------------------------------
+
+  /** Puts {@code filename} back in line, keeping any upload session it already has. */
+  public synchronized void pending(String filename) throws IOException {
+    write(new Job(filename, State.PENDING, null, null, uploadUrl(filename)));
+  }
+
+  /** Gives {@code filename} the slot {@code at}, keeping any upload session it already has. */
+  public synchronized void scheduled(String filename, Instant at) throws IOException {
+    write(new Job(filename, State.SCHEDULED, at, null, uploadUrl(filename)));
+  }
+
+  /**
+   * Moves {@code filename} to {@link State#UPLOADING} if it is still
+   * scheduled for {@code slot}. Returns {@code false} for a task whose slot
+   * was since moved or that another task already claimed.
+   */
+  public synchronized boolean startUpload(String filename, Instant slot) throws IOException {
+    Job job = jobs.get(filename);
+    if (job == null || job.state() != State.SCHEDULED || !slot.equals(job.scheduledAt())) {
+      return false;
+    }
+    write(job.with(State.UPLOADING));
+    return true;
+  }
+
+  /** Records the resumable upload session opened for {@code filename}. */
+  public synchronized void uploadSession(String filename, String uploadUrl) throws IOException {
+    Job job = require(filename);
+    write(new Job(filename, job.state(), job.scheduledAt(), job.videoId(), uploadUrl));
+  }
+
+  public synchronized void uploaded(String filename, String videoId) throws IOException {
+    Job job = require(filename);
+    write(new Job(filename, State.UPLOADED, job.scheduledAt(), videoId, null));
+  }
+
+  public synchronized void archived(String filename) throws IOException {
+    write(require(filename).with(State.ARCHIVED));
+  }
+
+  /** Stops tracking {@code filename} (for example because it was deleted by hand). */
+  public synchronized void forget(String filename) throws IOException {
+    if (!jobs.containsKey(filename)) return;
+    append(FORGET + "\t" + filename + "\t" + NONE + "\t" + NONE + "\t" + NONE);
+    jobs.remove(filename);
+    maybeSnapshot();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    wal.close();
+  }
+
+  private String uploadUrl(String filename) {
+    Job job = jobs.get(filename);
+    return job == null ? null : job.uploadUrl();
+  }
+
+  private Job require(String filename) {
+    Job job = jobs.get(filename);
+    if (job == null) {
+      throw new IllegalStateException("No journal entry for " + filename);
+    }
+    return job;
+  }
+
+  private synchronized void write(Job job) throws IOException {
+    append(format(job));
+    apply(job);
+    maybeSnapshot();
+  }
+
+  private void apply(Job job) {
+    if (job.state() == State.ARCHIVED) {
+      jobs.remove(job.filename());
+    } else {
+      jobs.put(job.filename(), job);
+    }
+  }
+
+  // Log and snapshot --------------------------------------------------------
+
+  private void append(String line) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+    while (buf.hasRemaining()) {
+      wal.write(buf);
+    }
+    wal.force(false);
+    walRecords++;
+  }
+
+  private void maybeSnapshot() throws IOException {
+    if (walRecords >= SNAPSHOT_EVERY) {
+      snapshot();
+    }
+  }
+
+  /**
+   * Writes all unfinished jobs to the snapshot, then empties the log. A
+   * crash in between only means the next start replays records the
+   * snapshot already contains.
+   */
+  private void snapshot() throws IOException {
+    StringBuilder out = new StringBuilder();
+    for (Job job : jobs.values()) {
+      out.append(format(job)).append('\n');
+    }
+
+    Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+    try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buf = ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+      while (buf.hasRemaining()) {
+        ch.write(buf);
+      }
+      ch.force(true);
+    }
+    try {
+      Files.move(tmp, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    wal.truncate(0);
+    wal.force(true);
+    walRecords = 0;
+  }
+
+  /** Applies every complete record in {@code file}; returns how many there were. */
+  private int replay(Path file) throws IOException {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return 0;
+    }
+
+    int applied = 0;
+    for (String line : lines) {
+      String[] cols = line.split("\t", -1);
+      if (cols.length != 5) continue;
+      try {
+        if (FORGET.equals(cols[0])) {
+          jobs.remove(cols[1]);
+        } else {
+          apply(new Job(
+            cols[1],
+            State.valueOf(cols[0]),
+            NONE.equals(cols[2]) ? null : Instant.parse(cols[2]),
+            NONE.equals(cols[3]) ? null : cols[3],
+            NONE.equals(cols[4]) ? null : cols[4]));
+        }
+        applied++;
+      } catch (RuntimeException e) {
+        // torn or corrupt line — skip it
+      }
+    }
+    return applied;
+  }
+
+  private static String format(Job job) {
+    return job.state()
+      + "\t" + job.filename()
+      + "\t" + (job.scheduledAt() == null ? NONE : job.scheduledAt().toString())
+      + "\t" + (job.videoId() == null ? NONE : job.videoId())
+      + "\t" + (job.uploadUrl() == null ? NONE : job.uploadUrl());
+  }
+}
@@ -2,17 +2,25 @@ package vid.manager;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.google.api.client.auth.oauth2.AuthorizationCodeRequestUrl;
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.TokenResponseException;
 import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
 import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.FileContent;
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.client.util.store.FileDataStoreFactory;
@@ -22,11 +30,60 @@ import com.google.api.services.youtube.model.Video;
 import com.google.api.services.youtube.model.VideoSnippet;
 import com.google.api.services.youtube.model.VideoStatus;
 
+import vid.builder.Env;
+
+/**
+ * Uploads videos to YouTube, one cached session per channel.
+ *
+ * <p>All sessions share a single HTTP transport. Each session builds its
+ * OAuth flow, credential and {@link YouTube} client once and reuses them for
+ * every upload of that channel. A background task refreshes access tokens
+ * shortly before they expire, so an upload never starts with a stale
+ * token. Loading a stored token only waits for other uploads of the same
+ * channel. The interactive browser login (which listens on port 8888) is
+ * the one step serialised across all channels, so two channels that need a
+ * re-auth at the same time take turns instead of fighting over the port;
+ * neither the refresher nor a channel with a valid token waits for it.</p>
+ */
 public class YouTubeUploader {
   private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
   private static final List<String> SCOPES =
       Collections.singletonList(YouTubeScopes.YOUTUBE_UPLOAD);
 
+  /** Refresh an access token when it has less than this long left. */
+  private static final long REFRESH_MARGIN_SEC =
+      Long.parseLong(Env.get("YOUTUBE_TOKEN_REFRESH_MARGIN_SEC", "300"));
+
+  /** Only one browser login at a time — they all use port 8888. */
+  private static final Object AUTH_LOCK = new Object();
+
+  private static final Map<String, Session> SESSIONS = new ConcurrentHashMap<>();
+
+  private static final ScheduledExecutorService REFRESHER =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "youtube-token-refresh");
+        t.setDaemon(true);
+        return t;
+      });
+
+  /** Resumable-upload chunk size, a multiple of the 256 KB the API requires. */
+  private static final int CHUNK_BYTES = Math.max(1, (int) Math.round(
+      Double.parseDouble(Env.get("UPLOAD_CHUNK_MB", "8")) * 1024 * 1024
+        / MediaHttpUploader.MINIMUM_CHUNK_SIZE)) * MediaHttpUploader.MINIMUM_CHUNK_SIZE;
+
+  /** Shared across channels so they split the uplink instead of fighting over it. */
+  private static final UplinkLimiter UPLINK = new UplinkLimiter(
+      Integer.parseInt(Env.get("UPLOAD_MIN_CONCURRENCY", "1")),
+      Integer.parseInt(Env.get("UPLOAD_WORKERS", "4")));
+
+  private static NetHttpTransport transport;
+
+  /** Told the URL of a new upload session before any bytes are sent, so it can be recorded. */
+  @FunctionalInterface
+  public interface SessionListener {
+    void started(String uploadUrl) throws IOException;
+  }
+
   /**
    * Uploads a video to YouTube using the provided OAuth credentials and user email.
    *
@@ -37,8 +94,9 @@ public class YouTubeUploader {
    * @param clientId      OAuth2 client ID
    * @param clientSecret  OAuth2 client secret
    * @param userEmail     the YouTube‐account email (used for login_hint & token store)
+   * @return the ID YouTube assigned to the new video
    */
-  public static boolean uploadVideo(
+  public static String uploadVideo(
       String videoPath,
       String title,
       String description,
@@ -47,47 +105,74 @@ public class YouTubeUploader {
       String clientSecret,
       String userEmail
   ) throws Exception {
-    // Build in‐memory client secrets
-    GoogleClientSecrets.Details details = new GoogleClientSecrets.Details();
-    details.setClientId(clientId);
-    details.setClientSecret(clientSecret);
-    details.setAuthUri("https://accounts.google.com/o/oauth2/auth");
-    details.setTokenUri("https://oauth2.googleapis.com/token");
-    var clientSecrets = new GoogleClientSecrets().setInstalled(details);
-
-    // Prepare HTTP + Storage
-    var httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-    var dataStoreDir = new File("tokens/" + clientId);
-    var flow = new GoogleAuthorizationCodeFlow.Builder(
-        httpTransport, JSON_FACTORY, clientSecrets, SCOPES)
-      .setDataStoreFactory(new FileDataStoreFactory(dataStoreDir))
-      .setAccessType("offline")
-      .build();
-
-    // Custom AuthorizationCodeInstalledApp to inject login_hint
-    LocalServerReceiver receiver = new LocalServerReceiver.Builder()
-        .setPort(8888)
-        .build();
+    return uploadVideo(videoPath, title, description, privacyStatus,
+        clientId, clientSecret, userEmail, null, url -> { });
+  }
 
-    AuthorizationCodeInstalledApp app =
-        new AuthorizationCodeInstalledApp(flow, receiver) {
-      @Override
-      protected void onAuthorization(AuthorizationCodeRequestUrl authUrl) throws IOException {
-        // Preselect the correct account
-        authUrl.set("login_hint", userEmail);
-        super.onAuthorization(authUrl);
+  /**
+   * Same as {@link #uploadVideo(String, String, String, String, String, String, String)},
+   * but continues the session at {@code resumeUrl} if it is given and still
+   * known to YouTube. If that session already completed, the existing video's
+   * ID is returned without sending anything. A new session's URL is passed to
+   * {@code onSession} before the first byte is sent.
+   */
+  public static String uploadVideo(
+      String videoPath,
+      String title,
+      String description,
+      String privacyStatus,
+      String clientId,
+      String clientSecret,
+      String userEmail,
+      String resumeUrl,
+      SessionListener onSession
+  ) throws Exception {
+    YouTube youtube = session(clientId, clientSecret, userEmail).youtube();
+    File file = new File(videoPath);
+    String name = file.getName();
+
+    try (UplinkLimiter.Ticket ticket = UPLINK.acquire()) {
+      ResumableUpload upload = null;
+      if (resumeUrl != null) {
+        upload = ResumableUpload.resume(youtube, file, CHUNK_BYTES, resumeUrl).orElse(null);
+        if (upload == null) {
+          System.err.printf("⚠️ Upload session of %s expired, starting over%n", name);
+        } else if (!upload.isComplete()) {
+          System.out.printf(" ↪️ %s: resuming at %.1f of %.1f MB%n",
+              name, upload.offset() / 1048576.0, upload.size() / 1048576.0);
+        }
+      }
+      if (upload == null) {
+        upload = ResumableUpload.start(youtube, file, CHUNK_BYTES, metadata(title, description, privacyStatus));
+        onSession.started(upload.url());
+        System.out.printf(" ⬆️ %s: %.1f MB in %.2f MB chunks (%d uploads allowed)%n",
+            name, upload.size() / 1048576.0, CHUNK_BYTES / 1048576.0, UPLINK.limit());
       }
-    };
 
-    // Authorize, using userEmail as the key for token storage
-    Credential credential = app.authorize(userEmail);
+      long started = System.nanoTime();
+      long startOffset = upload.offset();
+      while (!upload.isComplete()) {
+        upload.sendNextChunk();
+        long sent = upload.offset() - startOffset;
+        ticket.progress(sent);
+        double secs = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+        double bps = sent / secs;
+        long eta = bps > 0 ? (long) ((upload.size() - upload.offset()) / bps) : 0;
+        System.out.printf(" ⬆️ %s: %5.1f%%  %6.2f MB/s  %s left%n",
+            name, upload.size() > 0 ? 100.0 * upload.offset() / upload.size() : 100.0, bps / 1048576,
+            eta >= 60 ? (eta / 60) + "m" + (eta % 60) + "s" : eta + "s");
+      }
 
-    // Build the YouTube service
-    YouTube youtube = new YouTube.Builder(httpTransport, JSON_FACTORY, credential)
-        .setApplicationName("uploadManager")
-        .build();
+      String videoId = upload.result().getId();
+      double secs = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+      double mb = (upload.size() - startOffset) / 1048576.0;
+      System.out.printf(" Uploaded! Video ID: %s (%.1f MB in %.0fs, %.2f MB/s)%n",
+          videoId, mb, secs, mb / secs);
+      return videoId;
+    }
+  }
 
-    // Prepare metadata
+  private static Video metadata(String title, String description, String privacyStatus) {
     Video video = new Video();
     VideoSnippet snippet = new VideoSnippet()
         .setTitle(title)
@@ -105,31 +190,165 @@ public class YouTubeUploader {
         .setPrivacyStatus(privacyStatus)
         .setSelfDeclaredMadeForKids(false);  // mark as not for kids
     video.setStatus(status);
+    return video;
+  }
 
-    // Upload media
-    FileContent media = new FileContent("video/mp4", new File(videoPath));
-    var insert = youtube.videos().insert("snippet,status", video, media);
-    insert.getMediaHttpUploader().setProgressListener(uploader -> {
-      switch (uploader.getUploadState()) {
-        case INITIATION_STARTED:
-          System.out.println(" Init started");
-          break;
-        case INITIATION_COMPLETE:
-          System.out.println(" Init complete");
-          break;
-        case MEDIA_IN_PROGRESS:
-          System.out.printf(" %.1f%%%n", uploader.getProgress() * 100);
-          break;
-        case MEDIA_COMPLETE:
-          System.out.println(" Upload done");
-          break;
-        default:
-          break;
+  // Sessions ----------------------------------------------------------------
+
+  private static Session session(String clientId, String clientSecret, String userEmail)
+      throws GeneralSecurityException, IOException {
+    String key = clientId + "|" + userEmail;
+    Session session = SESSIONS.get(key);
+    if (session == null) {
+      synchronized (SESSIONS) {
+        session = SESSIONS.get(key);
+        if (session == null) {
+          session = new Session(clientId, clientSecret, userEmail);
+          SESSIONS.put(key, session);
+        }
+      }
+    }
+    return session;
+  }
+
+  private static synchronized NetHttpTransport transport() throws GeneralSecurityException, IOException {
+    if (transport == null) {
+      transport = GoogleNetHttpTransport.newTrustedTransport();
+    }
+    return transport;
+  }
+
+  /** Flow, credential and client for one channel, built once and reused. */
+  private static final class Session {
+    private final String userEmail;
+    private final GoogleAuthorizationCodeFlow flow;
+    /** Held while this channel logs in, so its uploads wait for one login. */
+    private final Object loginLock = new Object();
+    // guarded by this; held only to read or swap them, never across I/O
+    private Credential credential;
+    private YouTube youtube;
+
+    Session(String clientId, String clientSecret, String userEmail)
+        throws GeneralSecurityException, IOException {
+      this.userEmail = userEmail;
+
+      // Build in‐memory client secrets
+      GoogleClientSecrets.Details details = new GoogleClientSecrets.Details();
+      details.setClientId(clientId);
+      details.setClientSecret(clientSecret);
+      details.setAuthUri("https://accounts.google.com/o/oauth2/auth");
+      details.setTokenUri("https://oauth2.googleapis.com/token");
+      var clientSecrets = new GoogleClientSecrets().setInstalled(details);
+
+      var dataStoreDir = new File("tokens/" + clientId);
+      this.flow = new GoogleAuthorizationCodeFlow.Builder(
+          transport(), JSON_FACTORY, clientSecrets, SCOPES)
+        .setDataStoreFactory(new FileDataStoreFactory(dataStoreDir))
+        .setAccessType("offline")
+        .build();
+
+      REFRESHER.scheduleWithFixedDelay(this::refreshIfExpiring, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /** The channel's client, logging in first if there is no usable token. */
+    YouTube youtube() throws GeneralSecurityException, IOException {
+      YouTube client = client();
+      if (client != null) return client;
+
+      synchronized (loginLock) {
+        client = client();
+        if (client != null) return client;
+
+        // A stored token is used without opening the browser.
+        Credential loaded = flow.loadCredential(userEmail);
+        if (!usable(loaded)) {
+          loaded = browserLogin();
+        }
+        return install(loaded);
       }
-    });
+    }
+
+    private synchronized YouTube client() {
+      return credential == null ? null : youtube;
+    }
+
+    private synchronized YouTube install(Credential loaded) throws GeneralSecurityException, IOException {
+      credential = loaded;
+      youtube = new YouTube.Builder(transport(), JSON_FACTORY, loaded)
+          .setApplicationName("uploadManager")
+          .build();
+      return youtube;
+    }
+
+    /** Same test the installed-app flow applies before it falls back to the browser. */
+    private static boolean usable(Credential c) {
+      if (c == null) return false;
+      Long expiresIn = c.getExpiresInSeconds();
+      return c.getRefreshToken() != null || expiresIn == null || expiresIn > 60;
+    }
 
-    Video response = insert.execute();
-    System.out.println(" Uploaded! Video ID: " + response.getId());
-    return true;
+    private Credential browserLogin() throws IOException {
+      // Custom AuthorizationCodeInstalledApp to inject login_hint
+      LocalServerReceiver receiver = new LocalServerReceiver.Builder()
+          .setPort(8888)
+          .build();
+
+      AuthorizationCodeInstalledApp app =
+          new AuthorizationCodeInstalledApp(flow, receiver) {
+        @Override
+        protected void onAuthorization(AuthorizationCodeRequestUrl authUrl) throws IOException {
+          // Preselect the correct account
+          authUrl.set("login_hint", userEmail);
+          super.onAuthorization(authUrl);
+        }
+      };
+
+      // Only the browser step is serialised: it needs port 8888 and a human.
+      // userEmail is the key for token storage.
+      synchronized (AUTH_LOCK) {
+        return app.authorize(userEmail);
+      }
+    }
+
+    /**
+     * Refreshes the access token ahead of expiry. If the refresh token was
+     * revoked, drops it so the next upload logs in again. Never waits for
+     * a login in progress.
+     */
+    private void refreshIfExpiring() {
+      Credential current;
+      synchronized (this) {
+        current = credential;
+      }
+      if (current == null) return;
+      Long expiresIn = current.getExpiresInSeconds();
+      if (expiresIn == null || expiresIn > REFRESH_MARGIN_SEC) return;
+
+      try {
+        if (!current.refreshToken()) {
+          System.err.printf("⚠️ [%s] Could not refresh YouTube token, will log in again%n", userEmail);
+          drop(current);
+        }
+      } catch (TokenResponseException e) {
+        System.err.printf("⚠️ [%s] YouTube token revoked (%s), will log in again%n",
+          userEmail, e.getDetails() == null ? e.getMessage() : e.getDetails().getError());
+        try {
+          flow.getCredentialDataStore().delete(userEmail);
+        } catch (IOException ignored) {
+          // the next login overwrites it anyway
+        }
+        drop(current);
+      } catch (IOException e) {
+        // network trouble; try again on the next pass
+        System.err.printf("⚠️ [%s] YouTube token refresh failed: %s%n", userEmail, e.getMessage());
+      }
+    }
+
+    /** Forgets {@code stale} unless a newer login already replaced it. */
+    private synchronized void drop(Credential stale) {
+      if (credential == stale) {
+        credential = null;
+      }
+    }
   }
 }
@@ -0,0 +1,107 @@
+// Long-lived render sidecar driven by vid.builder.RenderDaemon.
+//
+// Opens Chromium once against a bundle of the project, then reads one JSON
+// job per line on stdin ({"id","props","output"}) and answers on stdout with
+// {"type":"ready"|"progress"|"done"|"error","id",...}. Everything else is
+// logged to stderr so stdout stays a clean protocol channel.
+
+import { bundle } from '@remotion/bundler';
+import {
+  openBrowser,
+  renderMedia,
+  selectComposition,
+} from '@remotion/renderer';
+import fs from 'node:fs';
+import path from 'node:path';
+import readline from 'node:readline';
+
+console.log = (...args) => console.error(...args);
+
+const root = process.cwd();
+const jobsDir = path.resolve(process.argv[2] ?? path.join(root, 'public', 'jobs'));
+const concurrency = Math.max(1, Number(process.env.RENDER_CONCURRENCY ?? 1));
+
+const send = (msg) => process.stdout.write(JSON.stringify(msg) + '\n');
+
+// Java passes the shared prebuilt bundle (already linked to the jobs folder)
+// as argv[3]; without it, bundle here.
+let serveUrl = process.argv[3];
+if (!serveUrl) {
+  serveUrl = await bundle({
+    entryPoint: path.join(root, 'src', 'index.ts'),
+  });
+
+  // The bundle holds a copy of public/ as it was at bundling time. Point its
+  // jobs/ folder at the live one so assets written after startup resolve.
+  fs.mkdirSync(jobsDir, { recursive: true });
+  const bundledJobs = path.join(serveUrl, 'public', 'jobs');
+  fs.rmSync(bundledJobs, { recursive: true, force: true });
+  fs.mkdirSync(path.dirname(bundledJobs), { recursive: true });
+  fs.symlinkSync(jobsDir, bundledJobs, 'junction');
+}
+
+const browser = await openBrowser('chrome');
+send({ type: 'ready' });
+
+const queue = [];
+let running = 0;
+
+const render = async ({ id, props, output }) => {
+  const inputProps = JSON.parse(fs.readFileSync(props, 'utf8'));
+  const composition = await selectComposition({
+    serveUrl,
+    id: 'CaptionedShort',
+    inputProps,
+    puppeteerInstance: browser,
+  });
+  let lastReported = -1;
+  await renderMedia({
+    composition,
+    serveUrl,
+    codec: 'h264',
+    outputLocation: output,
+    inputProps,
+    puppeteerInstance: browser,
+    onProgress: ({ progress }) => {
+      const step = Math.floor(progress * 10);
+      if (step > lastReported) {
+        lastReported = step;
+        send({ type: 'progress', id, progress });
+      }
+    },
+  });
+};
+
+const pump = () => {
+  while (running < concurrency && queue.length > 0) {
+    const job = queue.shift();
+    running++;
+    render(job)
+      .then(() => send({ type: 'done', id: job.id }))
+      .catch((err) => send({ type: 'error', id: job.id, message: String(err?.message ?? err) }))
+      .finally(() => {
+        running--;
+        pump();
+      });
+  }
+};
+
+const rl = readline.createInterface({ input: process.stdin });
+rl.on('line', (line) => {
+  if (!line.trim()) return;
+  try {
+    queue.push(JSON.parse(line));
+    pump();
+  } catch (err) {
+    console.error('Ignoring malformed job:', line);
+  }
+});
+
+// Java closed our stdin (or exited): finish what is running, then quit.
+rl.on('close', async () => {
+  while (running > 0 || queue.length > 0) {
+    await new Promise((r) => setTimeout(r, 200));
+  }
+  await browser.close({ silent: true });
+  process.exit(0);
+});
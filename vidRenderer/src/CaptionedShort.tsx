@@ -13,11 +13,14 @@ interface Caption {
   text: string;
 }
 
-export const CaptionedShort: React.FC<{
+export type CaptionedShortProps = {
   videoSrc?: string;
   audioSrc?: string;
   captions: Caption[];
-}> = ({
+  durationInFrames?: number;
+};
+
+export const CaptionedShort: React.FC<CaptionedShortProps> = ({
   videoSrc = 'backgroundclip.mp4',
   audioSrc = 'speech.mp3',
   captions,
@@ -1,30 +1,42 @@
-import { Composition } from 'remotion';
-import { CaptionedShort } from './CaptionedShort';
-import captions from './remotion-captions.json';
+import { CalculateMetadataFunction, Composition } from 'remotion';
+import { CaptionedShort, CaptionedShortProps } from './CaptionedShort';
 import React from 'react';
 
 const fps = 30;
 
-// Find the end time of the last caption (in seconds):
-const lastCaptionEnd = captions[captions.length - 1]?.end ?? 0;
-// Add a small buffer (e.g. 1 second) so it doesn’t cut off exactly at the last word:
-const durationInSeconds = lastCaptionEnd + 1;
+// Each render passes its own job's captions through --props, so the
+// duration is derived from those props rather than from a shared file.
+// The Java side precomputes it as durationInFrames; the caption-based
+// fallback keeps the Studio preview working without it.
+const calculateMetadata: CalculateMetadataFunction<CaptionedShortProps> = ({
+  props,
+}) => {
+  if (props.durationInFrames) {
+    return { durationInFrames: props.durationInFrames };
+  }
 
-// Convert to whole frames:
-const durationInFrames = Math.ceil(durationInSeconds * fps);
+  // Find the end time of the last caption (in seconds):
+  const lastCaptionEnd = props.captions[props.captions.length - 1]?.end ?? 0;
+  // Add a small buffer (e.g. 1 second) so it doesn’t cut off exactly at the last word:
+  const durationInSeconds = lastCaptionEnd + 1;
+
+  // Convert to whole frames:
+  return { durationInFrames: Math.ceil(durationInSeconds * fps) };
+};
 
 export const RemotionRoot = () => (
   <Composition
     id="CaptionedShort"
     component={CaptionedShort}
-    durationInFrames={durationInFrames}
+    durationInFrames={fps}
     fps={fps}
     width={1080}
     height={1920}
+    calculateMetadata={calculateMetadata}
     defaultProps={{
       videoSrc: 'backgroundclip.mp4',
       audioSrc: 'speech.mp3',
-      captions: captions,
+      captions: [],
     }}
   />
 );
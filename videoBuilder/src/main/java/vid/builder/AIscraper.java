@@ -1,7 +1,5 @@
 package vid.builder;
 
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
@@ -15,20 +13,14 @@ import org.json.JSONObject;
  * {@link #search(String)} returns a {@link SearchResult} holding the title
  * and body text used as the script for a video.
  *
- * <p>The {@code OPENAI_API_KEY} value is read via {@link Env}, so it may be
- * supplied through either a project-root {@code .env} file or a real
- * environment variable. Prompts for each channel live in
- * {@link Main}.</p>
+ * <p>Requests go through the shared {@link OpenAiClient}, which reads
+ * {@code OPENAI_API_KEY} via {@link Env}, so it may be supplied through
+ * either a project-root {@code .env} file or a real environment variable.
+ * Prompts for each channel live in {@link Main}.</p>
  */
 public class AIscraper {
-    private static final String API_KEY = Env.get("OPENAI_API_KEY");
-    private static final String ENDPOINT = "https://api.openai.com/v1/responses";
-
-    private final HttpClient httpClient;
-
-    public AIscraper() {
-        this.httpClient = HttpClient.newHttpClient();
-    }
+    /** Rough tokens for the model's answer plus web-search context, for rate budgeting. */
+    private static final int EXPECTED_COMPLETION_TOKENS = 2000;
 
     /**
      * Sends a prompt to GPT-4o using the web_search_preview tool.
@@ -43,16 +35,16 @@ public class AIscraper {
                     .put(new JSONObject().put("type", "web_search_preview"))
                 );
 
-            HttpRequest req = HttpRequest.newBuilder()
-                .uri(URI.create(ENDPOINT))
+            HttpRequest req = OpenAiClient.request(OpenAiClient.Endpoint.RESPONSES)
                 .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + API_KEY)
                 .POST(BodyPublishers.ofString(payload.toString()))
                 .build();
 
-            HttpResponse<String> response = httpClient.send(
+            HttpResponse<String> response = OpenAiClient.send(
+                OpenAiClient.Endpoint.RESPONSES,
                 req,
-                HttpResponse.BodyHandlers.ofString()
+                HttpResponse.BodyHandlers::ofString,
+                prompt.length() / 4 + EXPECTED_COMPLETION_TOKENS
             );
 
             return extractTitleAndText(response.body());
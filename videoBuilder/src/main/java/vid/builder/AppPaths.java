@@ -13,13 +13,17 @@ import java.nio.file.Path;
  * <ul>
  *   <li>{@code CHANNELS_ROOT} — root directory holding one subfolder per
  *       channel (each with {@code pending/}, {@code archive/},
- *       {@code upload_history.txt})</li>
+ *       {@code upload_history.txt}, {@code script_index.tsv})</li>
  *   <li>{@code VIDRENDERER_DIR} — the Remotion project directory</li>
  *   <li>{@code GAMEPLAY_DIR} — folder containing long background gameplay
- *       clips ({@code back_1.mp4 … back_N.mp4})</li>
+ *       clips, indexed by {@link GameplayCatalog}</li>
  *   <li>{@code NPX_PATH} — full path to the {@code npx} executable used to
  *       invoke Remotion (defaults to just {@code npx}, relying on
  *       {@code PATH})</li>
+ *   <li>{@code NODE_BIN} — {@code node} executable used to run the
+ *       Remotion render daemon</li>
+ *   <li>{@code CACHE_DIR} — folder for rebuildable indexes and caches
+ *       (defaults to {@code .cache})</li>
  * </ul>
  */
 public final class AppPaths {
@@ -40,19 +44,23 @@ public final class AppPaths {
     /** Executable used to run Remotion; defaults to {@code npx} on PATH. */
     public static final String NPX = Env.get("NPX_PATH", "npx");
 
-    // Derived paths --------------------------------------------------------
+    /** Node.js executable used to run the render daemon; defaults to {@code node} on PATH. */
+    public static final String NODE = Env.get("NODE_BIN", "node");
+
+    /** Scratch folder for indexes and caches that can be rebuilt at any time. */
+    public static final Path CACHE_DIR = Path.of(Env.get("CACHE_DIR", ".cache"));
 
-    /** MP3 produced by {@code VidBuilder.voiceAct} and consumed by Whisper + Remotion. */
-    public static final Path SPEECH_MP3 =
-        VIDRENDERER_DIR.resolve("public").resolve("speech.mp3");
+    // Derived paths --------------------------------------------------------
 
-    /** Trimmed background clip Remotion layers beneath the narration. */
-    public static final Path BACKGROUND_CLIP =
-        VIDRENDERER_DIR.resolve("public").resolve("backgroundclip.mp4");
+    /** Remotion static-asset folder; files here are reachable via {@code staticFile()}. */
+    public static final Path PUBLIC_DIR = VIDRENDERER_DIR.resolve("public");
 
-    /** Remotion captions JSON written by {@code VidBuilder.generateCaptions}. */
-    public static final Path CAPTIONS_JSON =
-        VIDRENDERER_DIR.resolve("src").resolve("remotion-captions.json");
+    /**
+     * Root of the per-video {@link JobWorkspace} folders. It lives under
+     * {@link #PUBLIC_DIR} so Remotion can load each job's speech and
+     * background clip by relative path.
+     */
+    public static final Path JOBS_DIR = PUBLIC_DIR.resolve("jobs");
 
     private AppPaths() {
         // Utility class — no instances.
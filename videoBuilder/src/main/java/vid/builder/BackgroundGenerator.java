@@ -1,9 +1,11 @@
 package vid.builder;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Random;
@@ -11,41 +13,60 @@ import java.util.Random;
 /**
  * Utility methods that shell out to {@code ffmpeg} / {@code ffprobe} to
  * chop long gameplay recordings into short clips the same length as the
- * generated narration audio. The resulting clip is re-encoded with H.264
- * baseline profile and has its audio stripped so it can be layered under
- * the TTS track by Remotion.
+ * generated narration audio. The resulting clip has its audio stripped so
+ * it can be layered under the TTS track by Remotion.
+ *
+ * <p>In the default {@code BACKGROUND_CUT_MODE=copy} a random clip starts
+ * on a keyframe taken from the {@link GameplayCatalog} and is extracted
+ * with {@code -c copy}, so cutting is I/O-bound. Sources that are not
+ * H.264 {@code yuv420p}, or {@code BACKGROUND_CUT_MODE=encode}, fall back
+ * to a full re-encode with the H.264 baseline profile.</p>
+ *
+ * <p>Clips can also be cut ahead of time from an estimated length with
+ * {@link #clipVideoRandomStart(String, double, String)} and cheaply fitted
+ * to the real narration afterwards with {@link #fitClipToDuration}.</p>
  *
  * <p>Both {@code ffmpeg} and {@code ffprobe} must be available on
  * {@code PATH}.</p>
  */
 public final class BackgroundGenerator {
 
+    /** H.264 baseline, no audio — the format every background clip is written in. */
+    private static final List<String> ENCODE_ARGS = List.of(
+        "-c:v", "libx264",
+        "-preset", "fast",
+        "-profile:v", "baseline",
+        "-pix_fmt", "yuv420p",
+        "-movflags", "+faststart",
+        "-an"
+    );
+
+    /** Whether random clips are stream-copied from keyframes when the source allows it. */
+    private static final boolean STREAM_COPY =
+        !"encode".equalsIgnoreCase(Env.get("BACKGROUND_CUT_MODE", "copy"));
+
     private BackgroundGenerator() {
         // Utility class — no instances.
     }
 
-    /** Returns the duration, in seconds, of the supplied audio file. */
+    /** Returns the duration, in seconds, of the supplied audio file (via {@link MediaProbe}). */
     public static double getAudioDurationSec(String audioPath) throws IOException, InterruptedException {
-        return probeDuration(audioPath);
+        return MediaProbe.durationSec(Path.of(audioPath));
     }
 
-    /** Returns the duration, in seconds, of the supplied video file. */
+    /** Returns the duration, in seconds, of the supplied video file (via {@link MediaProbe}). */
     public static double getVideoDurationSec(String videoPath) throws IOException, InterruptedException {
-        return probeDuration(videoPath);
+        return MediaProbe.durationSec(Path.of(videoPath));
     }
 
-    private static double probeDuration(String mediaPath) throws IOException, InterruptedException {
-        ProcessBuilder pb = new ProcessBuilder(
-            "ffprobe", "-v", "error",
-            "-show_entries", "format=duration",
-            "-of", "default=noprint_wrappers=1:nokey=1",
-            mediaPath
-        );
-        Process p = pb.start();
-        byte[] out = p.getInputStream().readAllBytes();
-        p.waitFor();
-        return Double.parseDouble(new String(out, StandardCharsets.UTF_8).trim());
-    }
+    /**
+     * Where a background clip was cut from. Returned by
+     * {@link #clipVideoRandomStart(String, double, String)} so the clip can
+     * later be fitted to the real narration length by
+     * {@link #fitClipToDuration(Cut, double)}.
+     */
+    public record Cut(String videoPath, double startSec, double durationSec, String outputPath,
+                      boolean streamCopy) {}
 
     /**
      * Clips {@code videoPath} to match the length of {@code audioPath},
@@ -62,7 +83,7 @@ public final class BackgroundGenerator {
             double duration = getAudioDurationSec(audioPath);
             String durationStr = String.format(Locale.US, "%.3f", duration);
 
-            var cmd = new java.util.ArrayList<String>();
+            var cmd = new ArrayList<String>();
             cmd.add("ffmpeg");
             cmd.add("-y");
             if (startOffset != null && !startOffset.isBlank()) {
@@ -73,28 +94,10 @@ public final class BackgroundGenerator {
             cmd.add(videoPath);
             cmd.add("-t");
             cmd.add(durationStr);
+            cmd.addAll(ENCODE_ARGS);
+            cmd.add(outputPath);
 
-            cmd.addAll(List.of(
-                "-c:v", "libx264",
-                "-preset", "fast",
-                "-profile:v", "baseline",
-                "-pix_fmt", "yuv420p",
-                "-movflags", "+faststart",
-                "-an",
-                outputPath
-            ));
-
-            ProcessBuilder pb = new ProcessBuilder(cmd);
-            pb.redirectErrorStream(true);
-            Process proc = pb.start();
-            try (BufferedReader r = new BufferedReader(
-                     new InputStreamReader(proc.getInputStream(), StandardCharsets.UTF_8))) {
-                r.lines().forEach(System.out::println);
-            }
-            int exit = proc.waitFor();
-            if (exit != 0) {
-                throw new RuntimeException("FFmpeg failed with exit code " + exit);
-            }
+            runFfmpeg(cmd);
             System.out.println("Background clip generated: " + outputPath);
         } catch (Exception e) {
             e.printStackTrace();
@@ -103,7 +106,8 @@ public final class BackgroundGenerator {
 
     /**
      * Picks a random segment from {@code videoPath} whose length matches
-     * the audio, then delegates to {@link #clipVideoToAudio}.
+     * the audio, then delegates to
+     * {@link #clipVideoRandomStart(String, double, String)}.
      */
     public static void clipVideoToAudioRandomStart(
         String videoPath,
@@ -111,16 +115,161 @@ public final class BackgroundGenerator {
         String outputPath
     ) {
         try {
-            double videoDur = getVideoDurationSec(videoPath);
             double audioDur = getAudioDurationSec(audioPath);
-            double maxStart = Math.max(0, videoDur - audioDur);
-            double startSec = new Random().nextDouble() * maxStart;
-            String startOffset = String.format(Locale.US, "%.2f", startSec);
-
-            System.out.println("🎯 Random start time: " + startOffset + "s");
-            clipVideoToAudio(videoPath, audioPath, outputPath, startOffset);
+            clipVideoRandomStart(videoPath, audioDur, outputPath);
+            System.out.println("Background clip generated: " + outputPath);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Cuts a random {@code durationSec}-long segment from {@code videoPath}
+     * without needing the narration audio, so it can run while TTS is still
+     * in flight. The returned {@link Cut} records where the clip came from.
+     */
+    public static Cut clipVideoRandomStart(
+        String videoPath,
+        double durationSec,
+        String outputPath
+    ) throws IOException, InterruptedException {
+        GameplayCatalog.Entry source = GameplayCatalog.get().entryFor(Path.of(videoPath));
+        if (STREAM_COPY) {
+            if (source.streamCopyable()) {
+                double maxStart = Math.max(0, source.durationSec() - durationSec);
+                double startSec = source.randomKeyframeAtOrBefore(maxStart);
+                double actualDur = Math.min(durationSec, source.durationSec() - startSec);
+
+                System.out.printf(Locale.US, "🎯 Keyframe start time: %.2fs (%.1fs clip, stream copy)%n",
+                                  startSec, actualDur);
+                copySegment(videoPath, startSec, actualDur, outputPath);
+                return new Cut(videoPath, startSec, actualDur, outputPath, true);
+            }
+            System.out.printf("ℹ️ %s is %s/%s — re-encoding instead of stream copy%n",
+                              Path.of(videoPath).getFileName(), source.codec(), source.pixFmt());
+        }
+
+        double videoDur = source.durationSec();
+        double maxStart = Math.max(0, videoDur - durationSec);
+        double startSec = new Random().nextDouble() * maxStart;
+        double actualDur = Math.min(durationSec, videoDur - startSec);
+
+        System.out.printf(Locale.US, "🎯 Random start time: %.2fs (%.1fs clip)%n", startSec, actualDur);
+        encodeSegment(videoPath, startSec, actualDur, outputPath);
+        return new Cut(videoPath, startSec, actualDur, outputPath, false);
+    }
+
+    /**
+     * Fits a clip produced by {@link #clipVideoRandomStart(String, double, String)}
+     * to {@code targetSec}. A longer clip is trimmed with a stream copy. A
+     * shorter stream-copied clip is copied again from its starting keyframe
+     * at the full length (or from an earlier keyframe if the source ends
+     * first), since a copied tail could only begin on a keyframe and would
+     * skip or repeat footage at the seam. A shorter encoded clip gets just
+     * the missing tail encoded from where it ended and appended losslessly.
+     */
+    public static void fitClipToDuration(Cut cut, double targetSec) throws IOException, InterruptedException {
+        Path clip = Path.of(cut.outputPath());
+        Path fitted = clip.resolveSibling("fitted-" + clip.getFileName());
+
+        if (targetSec <= cut.durationSec()) {
+            runFfmpeg(List.of(
+                "ffmpeg", "-y",
+                "-i", clip.toString(),
+                "-t", String.format(Locale.US, "%.3f", targetSec),
+                "-c", "copy",
+                "-movflags", "+faststart",
+                fitted.toString()
+            ));
+        } else if (cut.streamCopy()) {
+            GameplayCatalog.Entry source = GameplayCatalog.get().entryFor(Path.of(cut.videoPath()));
+            double startSec = cut.startSec();
+            if (startSec + targetSec > source.durationSec()) {
+                startSec = source.randomKeyframeAtOrBefore(Math.max(0, source.durationSec() - targetSec));
+            }
+            copySegment(cut.videoPath(), startSec, targetSec, fitted.toString());
+        } else {
+            Path tail = clip.resolveSibling("tail-" + clip.getFileName());
+            Path list = clip.resolveSibling("concat-" + clip.getFileName() + ".txt");
+            encodeSegment(cut.videoPath(), cut.startSec() + cut.durationSec(),
+                          targetSec - cut.durationSec(), tail.toString());
+            Files.writeString(list,
+                "file '" + clip.toAbsolutePath() + "'\n" +
+                "file '" + tail.toAbsolutePath() + "'\n",
+                StandardCharsets.UTF_8);
+            runFfmpeg(List.of(
+                "ffmpeg", "-y",
+                "-f", "concat", "-safe", "0",
+                "-i", list.toString(),
+                "-t", String.format(Locale.US, "%.3f", targetSec),
+                "-c", "copy",
+                "-movflags", "+faststart",
+                fitted.toString()
+            ));
+            Files.deleteIfExists(tail);
+            Files.deleteIfExists(list);
+        }
+        Files.move(fitted, clip, StandardCopyOption.REPLACE_EXISTING);
+        System.out.printf(Locale.US, "Background clip fitted to %.2fs: %s%n", targetSec, clip);
+    }
+
+    /** Re-encodes {@code durationSec} of {@code videoPath} from {@code startSec}, without audio. */
+    private static void encodeSegment(
+        String videoPath,
+        double startSec,
+        double durationSec,
+        String outputPath
+    ) throws IOException, InterruptedException {
+        var cmd = new ArrayList<String>(List.of(
+            "ffmpeg", "-y",
+            "-ss", String.format(Locale.US, "%.2f", startSec),
+            "-i", videoPath,
+            "-t", String.format(Locale.US, "%.3f", durationSec)
+        ));
+        cmd.addAll(ENCODE_ARGS);
+        cmd.add(outputPath);
+        runFfmpeg(cmd);
+    }
+
+    /**
+     * Copies {@code durationSec} of the video stream of {@code videoPath}
+     * starting at the keyframe {@code keyframeSec}, without re-encoding.
+     */
+    private static void copySegment(
+        String videoPath,
+        double keyframeSec,
+        double durationSec,
+        String outputPath
+    ) throws IOException, InterruptedException {
+        runFfmpeg(List.of(
+            "ffmpeg", "-y",
+            "-ss", String.format(Locale.US, "%.6f", keyframeSec),
+            "-i", videoPath,
+            "-t", String.format(Locale.US, "%.3f", durationSec),
+            "-map", "0:v:0",
+            "-c", "copy",
+            "-avoid_negative_ts", "make_zero",
+            "-movflags", "+faststart",
+            "-an",
+            outputPath
+        ));
+    }
+
+    /** Runs ffmpeg to completion; if the calling thread is interrupted, kills it and waits for it to exit. */
+    private static void runFfmpeg(List<String> cmd) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        Process proc = pb.start();
+        int exit;
+        try {
+            exit = proc.waitFor();
+        } catch (InterruptedException e) {
+            proc.destroyForcibly().waitFor();
+            throw e;
+        }
+        if (exit != 0) {
+            throw new RuntimeException("FFmpeg failed with exit code " + exit);
+        }
+    }
 }
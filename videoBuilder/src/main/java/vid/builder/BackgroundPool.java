@@ -0,0 +1,306 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Pool of ready-to-use background clips of common lengths, cut from
+ * {@link AppPaths#GAMEPLAY_DIR} while the machine is otherwise idle.
+ *
+ * <p>{@link #claim(double, Path)} hands out the shortest pooled clip that
+ * is at least as long as the narration, so generating a video only costs a
+ * file move plus a stream-copy trim. A background filler (started by
+ * {@link #startFiller()}) tops up whichever length is most in demand, but
+ * only while CPU load is below {@code BACKGROUND_POOL_IDLE_CPU} and the pool
+ * is under its {@code BACKGROUND_POOL_MAX_MB} disk budget; when the budget
+ * is exceeded the oldest clips of the fullest length are evicted first.</p>
+ *
+ * <p>Each clip {@code <len>s-<id>.mp4} has a {@code .cut} sidecar recording
+ * where it was cut from, so a claimed clip can still be extended if the
+ * narration runs longer than expected. A job that fails before using its
+ * clip {@link #giveBack(BackgroundGenerator.Cut) gives it back}.</p>
+ */
+public final class BackgroundPool {
+    private static final Path POOL_DIR = AppPaths.CACHE_DIR.resolve("background-pool");
+
+    private static final boolean ENABLED =
+        Boolean.parseBoolean(Env.get("BACKGROUND_POOL", "true"));
+    private static final int[] LENGTHS = Arrays.stream(
+            Env.get("BACKGROUND_POOL_LENGTHS", "30,45,60,90").split(","))
+        .map(String::trim)
+        .mapToInt(Integer::parseInt)
+        .sorted()
+        .toArray();
+    private static final int PER_LENGTH =
+        Integer.parseInt(Env.get("BACKGROUND_POOL_PER_LENGTH", "3"));
+    private static final long MAX_BYTES =
+        Long.parseLong(Env.get("BACKGROUND_POOL_MAX_MB", "2048")) * 1024 * 1024;
+    private static final double IDLE_CPU =
+        Double.parseDouble(Env.get("BACKGROUND_POOL_IDLE_CPU", "0.5"));
+
+    /** Number of claims per length, used to decide which length to refill first. */
+    private static final Map<Integer, AtomicLong> DEMAND = new ConcurrentHashMap<>();
+    private static final AtomicBoolean FILLER_STARTED = new AtomicBoolean();
+    private static final Object LOCK = new Object();
+
+    private BackgroundPool() {
+        // Utility class — no instances.
+    }
+
+    /**
+     * Moves the shortest pooled clip of at least {@code durationSec} to
+     * {@code destination}. Returns the clip's {@link BackgroundGenerator.Cut}
+     * (pointing at {@code destination}), or empty when the pool is disabled
+     * or has no clip long enough.
+     */
+    public static Optional<BackgroundGenerator.Cut> claim(double durationSec, Path destination) {
+        if (!ENABLED) return Optional.empty();
+
+        boolean demandRecorded = false;
+        synchronized (LOCK) {
+            for (int len : LENGTHS) {
+                if (len < durationSec) continue;
+                if (!demandRecorded) {
+                    DEMAND.computeIfAbsent(len, k -> new AtomicLong()).incrementAndGet();
+                    demandRecorded = true;
+                }
+                for (Path clip : clips(len)) {
+                    try {
+                        Properties cut = readSidecar(clip);
+                        Files.move(clip, destination, StandardCopyOption.REPLACE_EXISTING);
+                        Files.deleteIfExists(sidecar(clip));
+                        System.out.printf("♻️ Claimed pooled %ds background clip %s%n", len, clip.getFileName());
+                        return Optional.of(new BackgroundGenerator.Cut(
+                            cut.getProperty("source"),
+                            Double.parseDouble(cut.getProperty("start")),
+                            Double.parseDouble(cut.getProperty("duration")),
+                            destination.toString(),
+                            Boolean.parseBoolean(cut.getProperty("streamCopy"))));
+                    } catch (NoSuchFileException e) {
+                        // claimed by another process in the meantime — try the next one
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("⚠️ Dropping unusable pooled clip " + clip + ": " + e.getMessage());
+                        delete(clip);
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Puts a clip that a job cut or claimed but never used back into the
+     * pool, under the longest pool length it covers. Clips shorter than every
+     * pool length are left where they are.
+     */
+    public static void giveBack(BackgroundGenerator.Cut cut) {
+        if (!ENABLED) return;
+        Integer len = null;
+        for (int l : LENGTHS) {
+            if (cut.durationSec() >= l - 0.5) len = l;
+        }
+        if (len == null) return;
+
+        String id = len + "s-" + UUID.randomUUID();
+        Path filling = POOL_DIR.resolve("filling-" + id + ".mp4");
+        Path clip = POOL_DIR.resolve(id + ".mp4");
+        try {
+            Files.createDirectories(POOL_DIR);
+            Files.move(Path.of(cut.outputPath()), filling);
+            writeSidecar(sidecar(clip), cut);
+            Files.move(filling, clip, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("♻️ Returned %ds background clip %s to the pool%n", len, clip.getFileName());
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not return background clip to the pool: " + e.getMessage());
+            delete(clip);
+            return;
+        } finally {
+            try {
+                Files.deleteIfExists(filling);
+            } catch (IOException ignored) {
+                // only a stray temp file
+            }
+        }
+        try {
+            evictOverBudget();
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not trim background pool: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the idle-time filler once per process. Safe to call repeatedly.
+     */
+    public static void startFiller() {
+        if (!ENABLED || !FILLER_STARTED.compareAndSet(false, true)) return;
+        ScheduledExecutorService filler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "background-pool-filler");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        filler.scheduleWithFixedDelay(() -> {
+            try {
+                fillOnce();
+            } catch (Exception e) {
+                System.err.println("⚠️ Background pool refill failed: " + e.getMessage());
+            }
+        }, 10, 30, TimeUnit.SECONDS);
+    }
+
+    /** Cuts one clip for the most-needed length if the machine is idle and there is room. */
+    private static void fillOnce() throws IOException, InterruptedException {
+        if (!isIdle()) return;
+        Files.createDirectories(POOL_DIR);
+        if (totalBytes() >= MAX_BYTES) return;
+
+        Integer len = mostNeededLength();
+        if (len == null) return;
+
+        String source = VidBuilder.pickGameplayClip();
+        String id = len + "s-" + UUID.randomUUID();
+        Path filling = POOL_DIR.resolve("filling-" + id + ".mp4");
+        try {
+            BackgroundGenerator.Cut cut = BackgroundGenerator.clipVideoRandomStart(source, len, filling.toString());
+            if (cut.durationSec() < len - 0.5) {
+                return; // source too short for this length
+            }
+            Path clip = POOL_DIR.resolve(id + ".mp4");
+            writeSidecar(sidecar(clip), cut);
+            Files.move(filling, clip, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("🧺 Pooled %ds background clip %s%n", len, clip.getFileName());
+        } finally {
+            Files.deleteIfExists(filling);
+        }
+        evictOverBudget();
+    }
+
+    /** Length with a free slot, preferring the most claimed and then the emptiest. */
+    private static Integer mostNeededLength() {
+        Integer best = null;
+        long bestDemand = -1;
+        int bestDeficit = 0;
+        for (int len : LENGTHS) {
+            int deficit = PER_LENGTH - clips(len).size();
+            if (deficit <= 0) continue;
+            long demand = DEMAND.getOrDefault(len, new AtomicLong()).get();
+            if (demand > bestDemand || (demand == bestDemand && deficit > bestDeficit)) {
+                best = len;
+                bestDemand = demand;
+                bestDeficit = deficit;
+            }
+        }
+        return best;
+    }
+
+    /** Evicts the oldest clips of the fullest length until the pool fits its disk budget. */
+    private static void evictOverBudget() throws IOException {
+        synchronized (LOCK) {
+            while (totalBytes() > MAX_BYTES) {
+                List<Path> fullest = null;
+                for (int len : LENGTHS) {
+                    List<Path> clips = clips(len);
+                    if (fullest == null || clips.size() > fullest.size()) fullest = clips;
+                }
+                if (fullest == null || fullest.isEmpty()) return;
+                Path victim = fullest.get(0);
+                System.out.println("🗑️ Evicting pooled clip " + victim.getFileName());
+                delete(victim);
+            }
+        }
+    }
+
+    /** Whether CPU load is below the threshold. An unknown (negative) reading counts as busy. */
+    private static boolean isIdle() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean sun) {
+            double load = sun.getCpuLoad();
+            return load >= 0 && load < IDLE_CPU;
+        }
+        double load = os.getSystemLoadAverage();
+        return load >= 0 && load < os.getAvailableProcessors() * IDLE_CPU;
+    }
+
+    /** Pooled clips of {@code len} seconds, oldest first. */
+    private static List<Path> clips(int len) {
+        if (!Files.isDirectory(POOL_DIR)) return List.of();
+        String prefix = len + "s-";
+        try (Stream<Path> files = Files.list(POOL_DIR)) {
+            return files
+                .filter(p -> {
+                    String name = p.getFileName().toString();
+                    return name.startsWith(prefix) && name.endsWith(".mp4");
+                })
+                .sorted(Comparator.comparingLong(BackgroundPool::lastModified))
+                .toList();
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not list background pool: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static long totalBytes() throws IOException {
+        if (!Files.isDirectory(POOL_DIR)) return 0;
+        try (Stream<Path> files = Files.list(POOL_DIR)) {
+            return files.mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+    private static long lastModified(Path p) {
+        return p.toFile().lastModified();
+    }
+
+    private static Path sidecar(Path clip) {
+        String name = clip.getFileName().toString();
+        return clip.resolveSibling(name.substring(0, name.length() - 4) + ".cut");
+    }
+
+    private static Properties readSidecar(Path clip) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(sidecar(clip))) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    private static void writeSidecar(Path sidecar, BackgroundGenerator.Cut cut) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("source", cut.videoPath());
+        props.setProperty("start", String.valueOf(cut.startSec()));
+        props.setProperty("duration", String.valueOf(cut.durationSec()));
+        props.setProperty("streamCopy", String.valueOf(cut.streamCopy()));
+        try (OutputStream out = Files.newOutputStream(sidecar)) {
+            props.store(out, null);
+        }
+    }
+
+    private static void delete(Path clip) {
+        try {
+            Files.deleteIfExists(clip);
+            Files.deleteIfExists(sidecar(clip));
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not delete pooled clip " + clip + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+
+/**
+ * Render backend that splits the composition's frame range into K chunks,
+ * renders them as parallel {@code npx remotion render --frames=a-b}
+ * processes, and joins the pieces losslessly with the ffmpeg concat
+ * demuxer.
+ *
+ * <p>Chunks are rendered muted; the job's speech track is muxed in once
+ * during the concat step, so there are no audio seams at chunk boundaries.
+ * K is chosen from the cores and free memory available to this render
+ * (cores are shared between chunked renders running at the same time),
+ * and can be pinned with {@code RENDER_CHUNKS}.</p>
+ *
+ * <p>Selected with {@code RENDER_BACKEND=chunked}. Requires {@code ffmpeg}
+ * on {@code PATH}.</p>
+ */
+public final class ChunkedRenderer implements RenderBackend {
+  /** Fixed chunk count; {@code 0} (default) picks one from cores and memory. */
+  private static final int CHUNKS = Integer.parseInt(Env.get("RENDER_CHUNKS", "0"));
+  /** Memory budget of one chunk's Remotion process (browser tabs + encoder). */
+  private static final long CHUNK_MEMORY_BYTES =
+    Long.parseLong(Env.get("RENDER_CHUNK_MEMORY_MB", "1536")) * 1024 * 1024;
+  /** Cores each chunk should get before it is worth adding another chunk. */
+  private static final int CORES_PER_CHUNK = 2;
+  /** Shorter chunks spend more time starting up than rendering. */
+  private static final int MIN_CHUNK_FRAMES = 90;
+
+  private static final AtomicInteger ACTIVE = new AtomicInteger();
+  private static final ExecutorService CHUNK_EXECUTOR = Executors.newCachedThreadPool(r -> {
+    Thread t = new Thread(r, "render-chunk");
+    t.setDaemon(true);
+    return t;
+  });
+
+  @Override
+  public void render(JobWorkspace workspace, Path propsJson, Path output) throws Exception {
+    JSONObject props = new JSONObject(Files.readString(propsJson, StandardCharsets.UTF_8));
+    int frames = props.optInt("durationInFrames", Renderer.durationInFrames(props.getJSONArray("captions")));
+
+    int active = ACTIVE.incrementAndGet();
+    try {
+      int cores = Math.max(1, Runtime.getRuntime().availableProcessors() / active);
+      int k = chunkCount(frames, cores);
+      if (k <= 1) {
+        Renderer.renderWithCli(workspace, propsJson, output);
+        return;
+      }
+      renderChunks(workspace, propsJson, output, frames, k, Math.max(1, cores / k));
+    } finally {
+      ACTIVE.decrementAndGet();
+    }
+  }
+
+  /** Picks how many chunks to split {@code frames} into, given {@code cores} for this render. */
+  static int chunkCount(int frames, int cores) {
+    int byFrames = Math.max(1, frames / MIN_CHUNK_FRAMES);
+    if (CHUNKS > 0) return Math.min(CHUNKS, byFrames);
+
+    int byCores = Math.max(1, cores / CORES_PER_CHUNK);
+    int byMemory = (int) Math.max(1, freeMemoryBytes() / CHUNK_MEMORY_BYTES);
+    return Math.min(byFrames, Math.min(byCores, byMemory));
+  }
+
+  private static void renderChunks(
+    JobWorkspace workspace, Path propsJson, Path output, int frames, int k, int threadsPerChunk
+  ) throws Exception {
+    Path chunkDir = Files.createDirectories(workspace.dir().resolve("chunks"));
+    System.out.printf("🧩 Rendering %d frames in %d chunks (%d threads each)%n", frames, k, threadsPerChunk);
+
+    String serveUrl = RemotionBundle.serveUrl();
+    List<Path> chunks = new ArrayList<>(k);
+    List<Process> processes = new ArrayList<>(k);
+    List<Future<?>> running = new ArrayList<>(k);
+    try {
+      for (int i = 0; i < k; i++) {
+        int first = (int) ((long) frames * i / k);
+        int last = (int) ((long) frames * (i + 1) / k) - 1;
+        Path chunk = chunkDir.resolve(String.format("chunk-%03d.mp4", i));
+        Path log = chunkDir.resolve(String.format("chunk-%03d.log", i));
+        chunks.add(chunk);
+
+        ProcessBuilder pb = new ProcessBuilder(
+          AppPaths.NPX,
+          "remotion",
+          "render",
+          serveUrl,
+          "CaptionedShort",
+          chunk.toAbsolutePath().toString(),
+          "--props=" + propsJson.toAbsolutePath(),
+          "--frames=" + first + "-" + last,
+          "--muted",
+          "--concurrency=" + threadsPerChunk
+        );
+        pb.directory(AppPaths.VIDRENDERER_DIR.toFile());
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(log.toFile());
+        Process process = pb.start();
+        processes.add(process);
+        running.add(CHUNK_EXECUTOR.submit(() -> {
+          int exit = process.waitFor();
+          if (exit != 0) {
+            throw new IOException("Remotion chunk " + chunk.getFileName()
+              + " failed with exit code " + exit + " (see " + log + ")");
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : running) {
+        f.get();
+      }
+    } catch (Exception e) {
+      processes.forEach(Process::destroyForcibly);
+      throw e;
+    }
+
+    concat(chunks, workspace.speechMp3(), chunkDir.resolve("chunks.txt"), output);
+  }
+
+  /** Joins the muted chunks without re-encoding and muxes in the narration. */
+  private static void concat(List<Path> chunks, Path audio, Path list, Path output)
+    throws IOException, InterruptedException {
+    StringBuilder sb = new StringBuilder();
+    for (Path chunk : chunks) {
+      sb.append("file '").append(chunk.toAbsolutePath()).append("'\n");
+    }
+    Files.writeString(list, sb, StandardCharsets.UTF_8);
+
+    ProcessBuilder pb = new ProcessBuilder(
+      "ffmpeg", "-y",
+      "-f", "concat", "-safe", "0",
+      "-i", list.toString(),
+      "-i", audio.toAbsolutePath().toString(),
+      "-map", "0:v:0",
+      "-map", "1:a:0",
+      "-c:v", "copy",
+      "-c:a", "aac",
+      "-b:a", "192k",
+      "-movflags", "+faststart",
+      output.toString()
+    );
+    pb.inheritIO();
+    int exit = pb.start().waitFor();
+    if (exit != 0) {
+      throw new IOException("FFmpeg concat failed with exit code " + exit);
+    }
+  }
+
+  private static long freeMemoryBytes() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean sun) {
+      return sun.getFreeMemorySize();
+    }
+    return CHUNK_MEMORY_BYTES; // unknown — allow a single chunk's worth
+  }
+}
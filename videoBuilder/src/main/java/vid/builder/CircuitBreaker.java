@@ -0,0 +1,80 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consecutive-failure circuit breaker.
+ *
+ * <p>While closed, calls go through. After {@code failureThreshold} failures
+ * in a row the breaker opens and {@link #acquire()} rejects calls straight
+ * away with {@link OpenException} for {@code cooldownMs}. After that a single
+ * trial call is let through (half-open): if it succeeds the breaker closes
+ * again, if it fails the breaker re-opens for another cooldown.</p>
+ */
+public final class CircuitBreaker {
+    /** Thrown instead of calling a dependency that is known to be down. */
+    public static final class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        OpenException(String message) {
+            super(message);
+        }
+    }
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long cooldownNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, long cooldownMs) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+    }
+
+    /**
+     * Admits a call, or throws {@link OpenException} if the breaker is open
+     * (or half-open with its trial call still running).
+     */
+    public synchronized void acquire() throws OpenException {
+        switch (state) {
+            case CLOSED:
+                return;
+            case OPEN:
+                long remaining = cooldownNanos - (System.nanoTime() - openedAt);
+                if (remaining > 0) {
+                    throw new OpenException(name + " circuit open for another "
+                        + TimeUnit.NANOSECONDS.toSeconds(remaining) + "s after " + failures + " failures");
+                }
+                state = State.HALF_OPEN;
+                return;
+            case HALF_OPEN:
+            default:
+                throw new OpenException(name + " circuit half-open, trial call in progress");
+        }
+    }
+
+    /** Records a successful call and closes the breaker. */
+    public synchronized void onSuccess() {
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /** Records a failed call, opening the breaker when the threshold is reached. */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                System.err.printf("⚠️ %s circuit opened after %d consecutive failures%n", name, failures);
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed, content-addressed store for expensive API results such as
+ * TTS audio and Whisper transcripts.
+ *
+ * <p>Entries live under {@link AppPaths#CACHE_DIR}{@code /content/<namespace>/<ab>/<sha256><ext>}
+ * and are keyed by a SHA-256 of whatever determines their content (see
+ * {@link #key(String...)} and {@link #keyOf(Path)}). Writes go to a temp
+ * file that is atomically moved into place, so a crash never leaves a
+ * half-written entry behind. A hit refreshes the entry's modification time,
+ * and once the store grows past {@code CONTENT_CACHE_MAX_MB} the least
+ * recently used entries are evicted.</p>
+ *
+ * <p>Cache failures are logged and treated as misses; they never fail the
+ * caller.</p>
+ */
+public final class ContentCache {
+    private static final Path ROOT = AppPaths.CACHE_DIR.resolve("content");
+    private static final long MAX_BYTES =
+        Long.parseLong(Env.get("CONTENT_CACHE_MAX_MB", "1024")) * 1024 * 1024;
+
+    /** Approximate size of the store; {@code -1} until first measured. */
+    private static final AtomicLong TOTAL_BYTES = new AtomicLong(-1);
+    private static final Object EVICT_LOCK = new Object();
+
+    private ContentCache() {
+        // Utility class — no instances.
+    }
+
+    /** Key for content determined by {@code parts} (e.g. text, model, voice). */
+    public static String key(String... parts) {
+        MessageDigest sha = sha256();
+        for (String part : parts) {
+            sha.update(part.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    /** Key for content determined by the bytes of {@code file}. */
+    public static String keyOf(Path file) throws IOException {
+        MessageDigest sha = sha256();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int n; (n = in.read(buf)) > 0; ) {
+                sha.update(buf, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    /**
+     * Copies the cached entry to {@code destination} if present. Returns
+     * {@code false} on a miss.
+     */
+    public static boolean copyTo(String namespace, String key, String ext, Path destination) {
+        Path entry = entry(namespace, key, ext);
+        try {
+            Files.copy(entry, destination, StandardCopyOption.REPLACE_EXISTING);
+            touch(entry);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            System.err.println("⚠️ Content cache read failed for " + entry + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Returns the cached text entry, if present. */
+    public static Optional<String> getString(String namespace, String key, String ext) {
+        Path entry = entry(namespace, key, ext);
+        try {
+            String value = Files.readString(entry, StandardCharsets.UTF_8);
+            touch(entry);
+            return Optional.of(value);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            System.err.println("⚠️ Content cache read failed for " + entry + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Stores a copy of {@code source} under {@code key}. */
+    public static void put(String namespace, String key, String ext, Path source) {
+        Path entry = entry(namespace, key, ext);
+        try {
+            Files.createDirectories(entry.getParent());
+            Path tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+            commit(tmp, entry);
+        } catch (IOException e) {
+            System.err.println("⚠️ Content cache write failed for " + entry + ": " + e.getMessage());
+        }
+    }
+
+    /** Stores {@code value} as a text entry under {@code key}. */
+    public static void putString(String namespace, String key, String ext, String value) {
+        Path entry = entry(namespace, key, ext);
+        try {
+            Files.createDirectories(entry.getParent());
+            Path tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            Files.writeString(tmp, value, StandardCharsets.UTF_8);
+            commit(tmp, entry);
+        } catch (IOException e) {
+            System.err.println("⚠️ Content cache write failed for " + entry + ": " + e.getMessage());
+        }
+    }
+
+    private static Path entry(String namespace, String key, String ext) {
+        return ROOT.resolve(namespace).resolve(key.substring(0, 2)).resolve(key + ext);
+    }
+
+    private static void commit(Path tmp, Path entry) throws IOException {
+        long size = Files.size(tmp);
+        totalBytes(); // measure before the new entry lands so it is counted once
+        try {
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        if (TOTAL_BYTES.addAndGet(size) > MAX_BYTES) {
+            evict();
+        }
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // recency is best effort
+        }
+    }
+
+    /** Current store size, measured on first use. */
+    private static long totalBytes() {
+        long total = TOTAL_BYTES.get();
+        if (total >= 0) return total;
+        synchronized (EVICT_LOCK) {
+            if (TOTAL_BYTES.get() < 0) {
+                TOTAL_BYTES.set(entries().stream().mapToLong(p -> p.toFile().length()).sum());
+            }
+            return TOTAL_BYTES.get();
+        }
+    }
+
+    /** Deletes least recently used entries until the store is back under 90% of its budget. */
+    private static void evict() {
+        synchronized (EVICT_LOCK) {
+            List<Path> all = new ArrayList<>(entries());
+            all.sort(Comparator.comparingLong(p -> p.toFile().lastModified()));
+            long total = all.stream().mapToLong(p -> p.toFile().length()).sum();
+            long target = MAX_BYTES / 10 * 9;
+            int evicted = 0;
+            for (Path p : all) {
+                if (total <= target) break;
+                long size = p.toFile().length();
+                try {
+                    Files.deleteIfExists(p);
+                    total -= size;
+                    evicted++;
+                } catch (IOException e) {
+                    System.err.println("⚠️ Could not evict cache entry " + p + ": " + e.getMessage());
+                }
+            }
+            TOTAL_BYTES.set(total);
+            if (evicted > 0) {
+                System.out.println("🗑️ Evicted " + evicted + " content cache entries");
+            }
+        }
+    }
+
+    private static List<Path> entries() {
+        if (!Files.isDirectory(ROOT)) return List.of();
+        try (Stream<Path> walk = Files.walk(ROOT)) {
+            return walk
+                .filter(Files::isRegularFile)
+                .filter(p -> !p.getFileName().toString().endsWith(".tmp"))
+                .toList();
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not list content cache: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -40,10 +40,11 @@ public final class Env {
 
     /**
      * Returns the value for {@code key} or {@code defaultValue} when no
-     * value is configured.
+     * value is configured. A key left blank in {@code .env}
+     * ({@code KEY=}) counts as not configured.
      */
     public static String get(String key, String defaultValue) {
         String value = get(key);
-        return value != null ? value : defaultValue;
+        return value != null && !value.isBlank() ? value : defaultValue;
     }
 }
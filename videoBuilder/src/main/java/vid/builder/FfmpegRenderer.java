@@ -0,0 +1,119 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Render backend that reproduces the {@code CaptionedShort} template with a
+ * single {@code ffmpeg} pass instead of a headless browser.
+ *
+ * <p>The captions are converted to an ASS subtitle file styled like the
+ * composition (80px heavy white text with a black outline, centred, at most
+ * 90% of the frame wide), then the background clip is scaled to cover the
+ * 1080×1920 frame, the subtitles are burned in with the {@code subtitles}
+ * filter, and the narration is muxed in — all in one invocation.</p>
+ *
+ * <p>Selected with {@code RENDER_BACKEND=ffmpeg}, globally or per channel
+ * (e.g. {@code CHANNEL_1_RENDER_BACKEND=ffmpeg}). Requires an {@code ffmpeg}
+ * built with libass.</p>
+ */
+public final class FfmpegRenderer implements RenderBackend {
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 1920;
+  /** Font used for burned-in captions; must be installed for libass to find it. */
+  private static final String FONT = Env.get("RENDER_ASS_FONT", "Arial");
+
+  @Override
+  public void render(JobWorkspace workspace, Path propsJson, Path output) throws Exception {
+    JSONObject props = new JSONObject(Files.readString(propsJson, StandardCharsets.UTF_8));
+    JSONArray captions = props.getJSONArray("captions");
+    Files.writeString(workspace.subtitlesAss(), toAss(captions), StandardCharsets.UTF_8);
+
+    int frames = props.optInt("durationInFrames", Renderer.durationInFrames(captions));
+    double durationSec = (double) frames / Renderer.FPS;
+    String filter = String.format(Locale.US,
+      "scale=%d:%d:force_original_aspect_ratio=increase,crop=%d:%d,setsar=1,"
+        + "tpad=stop_duration=%.3f,fps=%d,subtitles=%s",
+      WIDTH, HEIGHT, WIDTH, HEIGHT, durationSec, Renderer.FPS,
+      workspace.subtitlesAss().getFileName());
+
+    ProcessBuilder pb = new ProcessBuilder(
+      "ffmpeg", "-y",
+      "-i", workspace.backgroundClip().getFileName().toString(),
+      "-i", workspace.speechMp3().getFileName().toString(),
+      "-filter_complex", "[0:v]" + filter + "[v]",
+      "-map", "[v]",
+      "-map", "1:a:0",
+      "-t", String.format(Locale.US, "%.3f", durationSec),
+      "-c:v", "libx264",
+      "-preset", "fast",
+      "-crf", "18",
+      "-pix_fmt", "yuv420p",
+      "-c:a", "aac",
+      "-b:a", "192k",
+      "-movflags", "+faststart",
+      output.toAbsolutePath().toString()
+    );
+    // run inside the workspace so the subtitles filter gets a plain relative
+    // path — drive letters and backslashes need heavy escaping in filtergraphs
+    pb.directory(workspace.dir().toFile());
+    pb.inheritIO();
+    int exit = pb.start().waitFor();
+    if (exit != 0) {
+      throw new IOException("FFmpeg render failed with exit code " + exit);
+    }
+  }
+
+  /** Builds an ASS script showing each caption between its start and end. */
+  static String toAss(JSONArray captions) {
+    StringBuilder sb = new StringBuilder()
+      .append("[Script Info]\n")
+      .append("ScriptType: v4.00+\n")
+      .append("PlayResX: ").append(WIDTH).append('\n')
+      .append("PlayResY: ").append(HEIGHT).append('\n')
+      .append("WrapStyle: 0\n")
+      .append("ScaledBorderAndShadow: yes\n\n")
+      .append("[V4+ Styles]\n")
+      .append("Format: Name, Fontname, Fontsize, PrimaryColour, SecondaryColour, OutlineColour, BackColour, "
+        + "Bold, Italic, Underline, StrikeOut, ScaleX, ScaleY, Spacing, Angle, BorderStyle, Outline, Shadow, "
+        + "Alignment, MarginL, MarginR, MarginV, Encoding\n")
+      // Alignment 5 = middle centre; 74px side margins = 5% of the width plus the 20px padding
+      .append("Style: Caption,").append(FONT)
+      .append(",80,&H00FFFFFF,&H00FFFFFF,&H00000000,&H00000000,-1,0,0,0,100,100,0,0,1,3,0,5,74,74,0,1\n\n")
+      .append("[Events]\n")
+      .append("Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n");
+
+    for (int i = 0; i < captions.length(); i++) {
+      JSONObject c = captions.getJSONObject(i);
+      sb.append("Dialogue: 0,")
+        .append(assTime(c.getDouble("start"))).append(',')
+        .append(assTime(c.getDouble("end")))
+        .append(",Caption,,0,0,0,,")
+        .append(escape(c.optString("text")))
+        .append('\n');
+    }
+    return sb.toString();
+  }
+
+  /** Formats seconds as ASS {@code H:MM:SS.cc}. */
+  private static String assTime(double seconds) {
+    long cs = Math.round(seconds * 100);
+    return String.format(Locale.US, "%d:%02d:%02d.%02d",
+      cs / 360000, (cs / 6000) % 60, (cs / 100) % 60, cs % 100);
+  }
+
+  /** Neutralises ASS override blocks and line breaks in caption text. */
+  private static String escape(String text) {
+    return text.trim()
+      .replace("\\", "/")
+      .replace("{", "(")
+      .replace("}", ")")
+      .replaceAll("\\s*\\R\\s*", " ");
+  }
+}
@@ -0,0 +1,529 @@
+package vid.builder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent catalog of every gameplay source in {@link AppPaths#GAMEPLAY_DIR}:
+ * duration, resolution, codec, pixel format, keyframe offsets and how often
+ * each source has been used.
+ *
+ * <p>The catalog is a binary file under
+ * {@link AppPaths#CACHE_DIR}{@code /gameplay-catalog} that is memory-mapped
+ * at startup; keyframe offsets stay as views into the mapping rather than
+ * being copied onto the heap. On load the gameplay folder is listed and only
+ * files whose size or modification time changed are re-probed, so adding a
+ * clip costs one {@code ffprobe} scan and everything else is free. The
+ * folder is listed again every {@code GAMEPLAY_RESCAN_SEC} and whenever a
+ * pick lands on a file that has been deleted, so a long-running process
+ * sees sources added or removed while it runs.</p>
+ *
+ * <p>{@link #pick()} is O(1): it samples two random sources and returns the
+ * less-used one, which spreads usage evenly across thousands of sources
+ * without ever spawning {@code ffprobe}. Usage counters are saved to a small
+ * side file in the background.</p>
+ *
+ * <p>Each rebuild writes a new numbered catalog generation instead of
+ * replacing the mapped file, because mapped files cannot be overwritten on
+ * every platform.</p>
+ */
+public final class GameplayCatalog {
+    private static final int MAGIC = 0x47504354; // "GPCT"
+    private static final int VERSION = 1;
+    private static final Path CATALOG_DIR = AppPaths.CACHE_DIR.resolve("gameplay-catalog");
+    private static final Path USAGE_FILE = CATALOG_DIR.resolve("usage.properties");
+    private static final Set<String> EXTENSIONS = Set.of(".mp4", ".mov", ".mkv", ".webm");
+    private static final long RESCAN_NANOS =
+        TimeUnit.SECONDS.toNanos(Long.parseLong(Env.get("GAMEPLAY_RESCAN_SEC", "300")));
+
+    private static GameplayCatalog instance;
+
+    /** Everything the pipeline needs to know about one gameplay source. */
+    public static final class Entry {
+        private final String name;
+        private final long size;
+        private final long mtime;
+        private final double durationSec;
+        private final int width;
+        private final int height;
+        private final String codec;
+        private final String pixFmt;
+        private final DoubleBuffer keyframes;
+        private final AtomicLong usage = new AtomicLong();
+
+        Entry(String name, long size, long mtime, double durationSec, int width, int height,
+              String codec, String pixFmt, DoubleBuffer keyframes) {
+            this.name = name;
+            this.size = size;
+            this.mtime = mtime;
+            this.durationSec = durationSec;
+            this.width = width;
+            this.height = height;
+            this.codec = codec;
+            this.pixFmt = pixFmt;
+            this.keyframes = keyframes;
+        }
+
+        /** Location of the source file. */
+        public Path path() {
+            Path p = Path.of(name);
+            return p.isAbsolute() ? p : AppPaths.GAMEPLAY_DIR.resolve(name);
+        }
+
+        public double durationSec() { return durationSec; }
+        public int width() { return width; }
+        public int height() { return height; }
+        public String codec() { return codec; }
+        public String pixFmt() { return pixFmt; }
+        public long usageCount() { return usage.get(); }
+
+        /**
+         * Whether clips can be stream-copied from this source: only H.264 in
+         * {@code yuv420p} is passed through untouched; anything else must be
+         * re-encoded for Remotion.
+         */
+        public boolean streamCopyable() {
+            return "h264".equals(codec) && "yuv420p".equals(pixFmt) && keyframes.limit() > 0;
+        }
+
+        /** Picks a random keyframe at or before {@code latestStartSec}. */
+        public double randomKeyframeAtOrBefore(double latestStartSec) {
+            int last = Math.max(0, ceilIndex(latestStartSec + 1e-9) - 1);
+            return keyframes.get(ThreadLocalRandom.current().nextInt(last + 1));
+        }
+
+        /** Index of the first keyframe {@code >= sec}. */
+        private int ceilIndex(double sec) {
+            int lo = 0;
+            int hi = keyframes.limit();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keyframes.get(mid) < sec) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private boolean matches(Path file) throws IOException {
+            return size == Files.size(file) && mtime == Files.getLastModifiedTime(file).toMillis();
+        }
+    }
+
+    /** Replaced as a whole (under {@code this}) so {@link #pick()} never sees a half-built list. */
+    private volatile List<Entry> entries = List.of();
+    private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+    private volatile long lastScanNanos;
+    private final ExecutorService saver = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "gameplay-catalog-saver");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean usageSaveQueued = new AtomicBoolean();
+
+    private GameplayCatalog() {
+    }
+
+    /** Returns the process-wide catalog, loading and refreshing it on first use. */
+    public static synchronized GameplayCatalog get() {
+        if (instance == null) {
+            GameplayCatalog catalog = new GameplayCatalog();
+            try {
+                catalog.load();
+            } catch (IOException | InterruptedException e) {
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                throw new IllegalStateException("Could not load gameplay catalog", e);
+            }
+            instance = catalog;
+        }
+        return instance;
+    }
+
+    /** Number of sources in the catalog. */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Picks a gameplay source in O(1): the less-used of two random samples.
+     * Increments its usage counter. A source whose file has gone is dropped
+     * (with a rescan of the folder) and another one is picked.
+     */
+    public Entry pick() {
+        if (System.nanoTime() - lastScanNanos > RESCAN_NANOS) {
+            rescanQuietly();
+        }
+        while (true) {
+            List<Entry> all = entries;
+            int n = all.size();
+            if (n == 0) {
+                throw new IllegalStateException("No gameplay sources in " + AppPaths.GAMEPLAY_DIR);
+            }
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            Entry a = all.get(rnd.nextInt(n));
+            Entry b = all.get(rnd.nextInt(n));
+            Entry chosen = a.usageCount() <= b.usageCount() ? a : b;
+            if (!Files.isRegularFile(chosen.path())) {
+                System.err.println("⚠️ Gameplay source " + chosen.path() + " is gone, rescanning");
+                rescanQuietly();
+                drop(chosen); // in case the rescan could not list the folder
+                continue;
+            }
+            chosen.usage.incrementAndGet();
+            queueUsageSave();
+            return chosen;
+        }
+    }
+
+    /**
+     * Returns the entry for {@code video}, probing and adding it to the
+     * catalog if it is not known yet or has changed on disk. Throws
+     * {@link NoSuchFileException} (and forgets the entry) if the file is gone.
+     */
+    public Entry entryFor(Path video) throws IOException, InterruptedException {
+        String name = nameOf(video);
+        Entry entry = byName.get(name);
+        if (!Files.isRegularFile(video)) {
+            if (entry != null) drop(entry);
+            throw new NoSuchFileException(video.toString(), null, "gameplay source was deleted");
+        }
+        if (entry != null && entry.matches(entry.path())) return entry;
+
+        synchronized (this) {
+            entry = byName.get(name);
+            if (entry != null && entry.matches(entry.path())) return entry;
+            Entry fresh = scan(name, video);
+            List<Entry> updated = new ArrayList<>(entries);
+            if (entry != null) {
+                fresh.usage.set(entry.usageCount());
+                updated.remove(entry);
+            }
+            updated.add(fresh);
+            entries = List.copyOf(updated);
+            byName.put(name, fresh);
+            save();
+            return fresh;
+        }
+    }
+
+    // Loading -----------------------------------------------------------------
+
+    private void load() throws IOException, InterruptedException {
+        Files.createDirectories(CATALOG_DIR);
+        Map<String, Entry> persisted = new HashMap<>();
+        latestGeneration().ifPresent(file -> {
+            try {
+                for (Entry e : readMapped(file)) persisted.put(e.name, e);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("⚠️ Ignoring unreadable gameplay catalog " + file + ": " + e.getMessage());
+            }
+        });
+
+        List<Path> files;
+        try {
+            files = listSources();
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not list " + AppPaths.GAMEPLAY_DIR + ": " + e.getMessage());
+            files = List.of();
+        }
+        boolean changed = refresh(files, persisted);
+        loadUsage();
+        if (changed) save();
+        System.out.printf("🎮 Gameplay catalog: %d source(s)%n", entries.size());
+    }
+
+    /** Lists the gameplay folder again, probing only new or changed files. */
+    private synchronized void rescan() throws IOException, InterruptedException {
+        if (refresh(listSources(), new HashMap<>(byName))) {
+            save();
+            System.out.printf("🎮 Gameplay catalog: %d source(s)%n", entries.size());
+        }
+    }
+
+    private void rescanQuietly() {
+        try {
+            rescan();
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not rescan " + AppPaths.GAMEPLAY_DIR + ": " + e.getMessage());
+            lastScanNanos = System.nanoTime(); // retry after the next interval, not on every pick
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Makes {@code files} the catalog, reusing entries from {@code known}
+     * whose size and modification time still match and carrying usage
+     * counters over to re-probed ones. Returns whether anything changed.
+     */
+    private synchronized boolean refresh(List<Path> files, Map<String, Entry> known)
+            throws InterruptedException {
+        boolean changed = false;
+        List<Entry> updated = new ArrayList<>(files.size());
+        for (Path file : files) {
+            String name = nameOf(file);
+            Entry entry = known.remove(name);
+            try {
+                if (entry == null || !entry.matches(file)) {
+                    System.out.println("🔎 Cataloguing " + file.getFileName() + "…");
+                    Entry fresh = scan(name, file);
+                    if (entry != null) fresh.usage.set(entry.usageCount());
+                    entry = fresh;
+                    changed = true;
+                }
+            } catch (IOException e) {
+                System.err.println("⚠️ Skipping unreadable gameplay source " + file + ": " + e.getMessage());
+                continue;
+            }
+            updated.add(entry);
+        }
+        changed |= !known.isEmpty(); // sources deleted since the last scan
+
+        entries = List.copyOf(updated);
+        byName.keySet().retainAll(updated.stream().map(e -> e.name).toList());
+        for (Entry e : updated) byName.put(e.name, e);
+        lastScanNanos = System.nanoTime();
+        return changed;
+    }
+
+    /** Removes {@code gone} without touching the rest of the catalog. */
+    private synchronized void drop(Entry gone) {
+        if (!entries.contains(gone)) return;
+        List<Entry> updated = new ArrayList<>(entries);
+        updated.remove(gone);
+        entries = List.copyOf(updated);
+        byName.remove(gone.name, gone);
+    }
+
+    private static List<Path> listSources() throws IOException {
+        try (Stream<Path> listing = Files.list(AppPaths.GAMEPLAY_DIR)) {
+            return listing.filter(GameplayCatalog::isVideo).sorted().toList();
+        }
+    }
+
+    private static boolean isVideo(Path p) {
+        String name = p.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(p) && EXTENSIONS.stream().anyMatch(name::endsWith);
+    }
+
+    private static String nameOf(Path video) {
+        Path abs = video.toAbsolutePath().normalize();
+        Path dir = AppPaths.GAMEPLAY_DIR.toAbsolutePath().normalize();
+        return dir.equals(abs.getParent()) ? abs.getFileName().toString() : abs.toString();
+    }
+
+    private static Optional<Path> latestGeneration() throws IOException {
+        try (Stream<Path> files = Files.list(CATALOG_DIR)) {
+            return files
+                .filter(p -> p.getFileName().toString().matches("catalog-\\d+\\.bin"))
+                .max(Comparator.comparingLong(GameplayCatalog::generationOf));
+        }
+    }
+
+    private static long generationOf(Path catalogFile) {
+        String name = catalogFile.getFileName().toString();
+        return Long.parseLong(name.substring("catalog-".length(), name.length() - ".bin".length()));
+    }
+
+    private static List<Entry> readMapped(Path file) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException("not a gameplay catalog (or an older version)");
+        }
+        int count = buf.getInt();
+        List<Entry> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = readString(buf);
+            long size = buf.getLong();
+            long mtime = buf.getLong();
+            double duration = buf.getDouble();
+            int width = buf.getInt();
+            int height = buf.getInt();
+            String codec = readString(buf);
+            String pixFmt = readString(buf);
+            int keyframeCount = buf.getInt();
+            DoubleBuffer keyframes = buf.slice(buf.position(), keyframeCount * Double.BYTES).asDoubleBuffer();
+            buf.position(buf.position() + keyframeCount * Double.BYTES);
+            result.add(new Entry(name, size, mtime, duration, width, height, codec, pixFmt, keyframes));
+        }
+        return result;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Probing -----------------------------------------------------------------
+
+    private static Entry scan(String name, Path video) throws IOException, InterruptedException {
+        List<String> stream = ffprobe(
+            "-select_streams", "v:0",
+            "-show_entries", "stream=codec_name,pix_fmt,width,height:format=duration",
+            "-of", "default=noprint_wrappers=1",
+            video.toString());
+        String codec = "";
+        String pixFmt = "";
+        int width = 0;
+        int height = 0;
+        double duration = 0;
+        for (String line : stream) {
+            int eq = line.indexOf('=');
+            if (eq < 0) continue;
+            String key = line.substring(0, eq);
+            String value = line.substring(eq + 1);
+            switch (key) {
+                case "codec_name" -> codec = value;
+                case "pix_fmt" -> pixFmt = value;
+                case "width" -> width = Integer.parseInt(value);
+                case "height" -> height = Integer.parseInt(value);
+                case "duration" -> duration = Double.parseDouble(value);
+                default -> { }
+            }
+        }
+
+        // packet-level scan: reads keyframe flags without decoding any frames
+        List<String> packets = ffprobe(
+            "-select_streams", "v:0",
+            "-show_entries", "packet=pts_time,flags",
+            "-of", "csv=p=0",
+            video.toString());
+        double[] keyframes = packets.stream()
+            .map(l -> l.split(","))
+            .filter(f -> f.length >= 2 && f[1].startsWith("K") && !"N/A".equals(f[0]))
+            .mapToDouble(f -> Double.parseDouble(f[0]))
+            .sorted()
+            .toArray();
+
+        return new Entry(name, Files.size(video), Files.getLastModifiedTime(video).toMillis(),
+                         duration, width, height, codec, pixFmt, DoubleBuffer.wrap(keyframes));
+    }
+
+    private static List<String> ffprobe(String... args) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>(List.of("ffprobe", "-v", "error"));
+        cmd.addAll(List.of(args));
+        Process p = new ProcessBuilder(cmd).start();
+        byte[] out = p.getInputStream().readAllBytes();
+        int exit = p.waitFor();
+        if (exit != 0) {
+            throw new IOException("ffprobe failed with exit code " + exit);
+        }
+        return new String(out, StandardCharsets.UTF_8).lines().map(String::trim).toList();
+    }
+
+    // Persistence -------------------------------------------------------------
+
+    /** Writes the catalog as a new generation and deletes older ones where possible. */
+    private synchronized void save() throws IOException {
+        long generation = latestGeneration().map(GameplayCatalog::generationOf).orElse(0L) + 1;
+        Path target = CATALOG_DIR.resolve("catalog-" + generation + ".bin");
+        Path tmp = Files.createTempFile(CATALOG_DIR, "catalog-", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry e : entries) {
+                writeString(out, e.name);
+                out.writeLong(e.size);
+                out.writeLong(e.mtime);
+                out.writeDouble(e.durationSec);
+                out.writeInt(e.width);
+                out.writeInt(e.height);
+                writeString(out, e.codec);
+                writeString(out, e.pixFmt);
+                out.writeInt(e.keyframes.limit());
+                for (int i = 0; i < e.keyframes.limit(); i++) {
+                    out.writeDouble(e.keyframes.get(i));
+                }
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        try (Stream<Path> files = Files.list(CATALOG_DIR)) {
+            files.filter(p -> p.getFileName().toString().matches("catalog-\\d+\\.bin"))
+                 .filter(p -> generationOf(p) < generation)
+                 .forEach(p -> {
+                     try {
+                         Files.deleteIfExists(p);
+                     } catch (IOException ignored) {
+                         // still mapped on this platform — removed on a later save
+                     }
+                 });
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private void loadUsage() {
+        if (!Files.exists(USAGE_FILE)) return;
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(USAGE_FILE)) {
+            props.load(in);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not read gameplay usage counters: " + e.getMessage());
+            return;
+        }
+        for (String name : props.stringPropertyNames()) {
+            Entry entry = byName.get(name);
+            if (entry != null) entry.usage.set(Long.parseLong(props.getProperty(name)));
+        }
+    }
+
+    /** Coalesces usage-counter writes onto the saver thread. */
+    private void queueUsageSave() {
+        if (!usageSaveQueued.compareAndSet(false, true)) return;
+        saver.execute(() -> {
+            usageSaveQueued.set(false);
+            Properties props = new Properties();
+            for (Entry e : entries) {
+                if (e.usageCount() > 0) props.setProperty(e.name, String.valueOf(e.usageCount()));
+            }
+            try {
+                Path tmp = Files.createTempFile(CATALOG_DIR, "usage-", ".tmp");
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    props.store(out, "gameplay source usage counters");
+                }
+                Files.move(tmp, USAGE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not save gameplay usage counters: " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,156 @@
+package vid.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stage-overlapped executor for {@link VideoJob}s.
+ *
+ * <p>Each stage (script, TTS, background, captions, render) owns a small
+ * worker pool and a bounded inbox. When a worker finishes a job it blocks
+ * until the next stage's inbox has room, so a slow stage applies
+ * back-pressure instead of letting work pile up. While video <i>N</i> is
+ * rendering, video <i>N+1</i> is already fetching its script and TTS, and
+ * a batch takes roughly as long as its slowest stage rather than the sum of
+ * all of them.</p>
+ *
+ * <p>A job that throws in any stage (including an {@link Error}) is logged
+ * and dropped and the worker moves on to the next job; its workspace is
+ * closed either way once it leaves the pipeline.</p>
+ *
+ * <pre>
+ *   try (GenerationPipeline p = new GenerationPipeline(2)
+ *          .stage("script", 2, job -&gt; ...)
+ *          .stage("render", 1, job -&gt; ...)
+ *          .start()) {
+ *     p.submit(job);
+ *   } // waits for every submitted job to finish
+ * </pre>
+ */
+public final class GenerationPipeline implements AutoCloseable {
+
+    /** Work performed on a job by a single stage. */
+    @FunctionalInterface
+    public interface StageAction {
+        void run(VideoJob job) throws Exception;
+    }
+
+    private record Stage(String name, int workers, StageAction action,
+                         BlockingQueue<VideoJob> inbox, ExecutorService pool) {}
+
+    private final int queueCapacity;
+    private final List<Stage> stages = new ArrayList<>();
+    private final Phaser inFlight = new Phaser(1);
+    private boolean started;
+
+    /**
+     * @param queueCapacity number of jobs each stage may hold waiting in its
+     *                      inbox before upstream stages block
+     */
+    public GenerationPipeline(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /** Appends a stage served by {@code workers} threads. */
+    public GenerationPipeline stage(String name, int workers, StageAction action) {
+        if (started) throw new IllegalStateException("Pipeline already started");
+        int n = Math.max(1, workers);
+        AtomicInteger seq = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "pipeline-" + name + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        stages.add(new Stage(name, n, action, new ArrayBlockingQueue<>(queueCapacity), pool));
+        return this;
+    }
+
+    /** Starts every stage's workers; call once after all stages are added. */
+    public GenerationPipeline start() {
+        if (stages.isEmpty()) throw new IllegalStateException("Pipeline has no stages");
+        started = true;
+        for (int i = 0; i < stages.size(); i++) {
+            Stage stage = stages.get(i);
+            int index = i;
+            for (int w = 0; w < stage.workers(); w++) {
+                stage.pool().execute(() -> work(index));
+            }
+            System.out.printf("  • Stage %-10s %d worker(s)%n", stage.name(), stage.workers());
+        }
+        return this;
+    }
+
+    /**
+     * Hands {@code job} to the first stage, blocking while its inbox is
+     * full.
+     */
+    public void submit(VideoJob job) throws InterruptedException {
+        if (!started) throw new IllegalStateException("Pipeline not started");
+        inFlight.register();
+        try {
+            stages.get(0).inbox().put(job);
+        } catch (InterruptedException e) {
+            finish(job);
+            throw e;
+        }
+    }
+
+    /** Waits for every submitted job to leave the pipeline, then stops the workers. */
+    @Override
+    public void close() {
+        inFlight.arriveAndAwaitAdvance();
+        for (Stage stage : stages) {
+            stage.pool().shutdownNow();
+        }
+    }
+
+    private void work(int index) {
+        Stage stage = stages.get(index);
+        Stage next = index + 1 < stages.size() ? stages.get(index + 1) : null;
+        try {
+            while (true) {
+                VideoJob job = stage.inbox().take();
+                boolean handedOff = false;
+                try {
+                    long startNanos = System.nanoTime();
+                    stage.action().run(job);
+                    System.out.printf(Locale.US, "  • [%s] %s done in %.1fs%n",
+                        job.id(), stage.name(), (System.nanoTime() - startNanos) / 1e9);
+                    if (next != null) {
+                        next.inbox().put(job);
+                        handedOff = true;
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (JobFailedException e) {
+                    System.err.printf("❌ [%s] %s stage produced nothing usable, dropping job: %s%n",
+                        job.id(), stage.name(), e.getMessage());
+                } catch (Throwable e) {
+                    // Errors too: letting one escape would end this worker
+                    // for good and leave the stage a thread short.
+                    System.err.printf("❌ [%s] %s stage failed: %s%n", job.id(), stage.name(), e);
+                    e.printStackTrace();
+                } finally {
+                    if (!handedOff) finish(job);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Pipeline closed — worker exits.
+        }
+    }
+
+    private void finish(VideoJob job) {
+        try {
+            job.close();
+        } finally {
+            inFlight.arriveAndDeregister();
+        }
+    }
+}
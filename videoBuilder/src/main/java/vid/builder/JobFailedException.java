@@ -0,0 +1,19 @@
+package vid.builder;
+
+/**
+ * Thrown by a pipeline stage when it produced nothing usable (an error
+ * instead of a script, no audio, no captions, …). The
+ * {@link GenerationPipeline} drops the job at that point, so no ffmpeg or
+ * Remotion time is spent on a video that cannot come out right.
+ */
+public class JobFailedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public JobFailedException(String message) {
+        super(message);
+    }
+
+    public JobFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,97 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Job-scoped scratch folder holding every intermediate artifact for a single
+ * video: narration audio, background clip, captions and Remotion props.
+ *
+ * <p>Each workspace is a fresh directory under {@link AppPaths#JOBS_DIR}, so
+ * any number of {@link VidBuilder} pipelines can run side by side without
+ * overwriting each other's files. Closing the workspace deletes the folder
+ * once the final MP4 has been rendered.</p>
+ */
+public final class JobWorkspace implements AutoCloseable {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final String id;
+    private final Path dir;
+
+    private JobWorkspace(String id, Path dir) {
+        this.id = id;
+        this.dir = dir;
+    }
+
+    /** Creates a new, empty workspace for a video on {@code channelName}. */
+    public static JobWorkspace create(String channelName) throws IOException {
+        String id = channelName + "-" + System.currentTimeMillis() + "-" + SEQUENCE.incrementAndGet();
+        Path dir = AppPaths.JOBS_DIR.resolve(id);
+        Files.createDirectories(dir);
+        return new JobWorkspace(id, dir);
+    }
+
+    /** Unique identifier of this job; also the workspace folder name. */
+    public String id() {
+        return id;
+    }
+
+    /** Root folder of this workspace. */
+    public Path dir() {
+        return dir;
+    }
+
+    /** Narration MP3 produced by {@code VidBuilder.voiceAct}. */
+    public Path speechMp3() {
+        return dir.resolve("speech.mp3");
+    }
+
+    /** Trimmed background clip layered beneath the narration. */
+    public Path backgroundClip() {
+        return dir.resolve("backgroundclip.mp4");
+    }
+
+    /** Compact {@code [{start,end,text}]} captions written by {@code VidBuilder.generateCaptions}. */
+    public Path captionsJson() {
+        return dir.resolve("remotion-captions.json");
+    }
+
+    /** ASS subtitles generated from the captions by {@code FfmpegRenderer}. */
+    public Path subtitlesAss() {
+        return dir.resolve("captions.ass");
+    }
+
+    /** Remotion input props passed to the render via {@code --props}. */
+    public Path propsJson() {
+        return dir.resolve("props.json");
+    }
+
+    /**
+     * Returns {@code artifact} relative to {@link AppPaths#PUBLIC_DIR} with
+     * forward slashes, i.e. the form Remotion's {@code staticFile()} expects.
+     */
+    public String staticPath(Path artifact) {
+        return AppPaths.PUBLIC_DIR.relativize(artifact).toString().replace('\\', '/');
+    }
+
+    /** Deletes the workspace folder and everything in it. */
+    @Override
+    public void close() {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    System.err.println("⚠️ Could not delete " + p + ": " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not clean workspace " + dir + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package vid.builder;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Command-line entry point for the video-generation pipeline.
@@ -16,12 +16,38 @@ import java.util.Map;
  * </pre>
  *
  * <p>For each selected channel this class looks up the channel-specific
- * prompt, reads the upload history so previously produced stories can be
- * excluded, and then drives {@link VidBuilder} through the full
+ * prompt, quotes the most recent uploads so they are not repeated, and then
+ * drives {@link VidBuilder} through the full
  * script → TTS → background → captions → render pipeline
- * {@code repeatCount} times.</p>
+ * {@code repeatCount} times. Each video is built in its own
+ * {@link JobWorkspace} and handed to a {@link GenerationPipeline}, where
+ * every step has its own worker pool; up to {@code BUILD_CONCURRENCY}
+ * videos (from {@code .env}) render concurrently.</p>
+ *
+ * <p>Older stories are not pasted into the prompt; instead every new script
+ * is checked against the channel's {@link ScriptIndex}, and a near-duplicate
+ * is thrown away and asked for again, so prompt size stays fixed however
+ * long the channel has been running.</p>
  */
 public class Main {
+  /** Number of videos rendered in parallel; defaults to half the available cores. */
+  private static final int BUILD_CONCURRENCY = Math.max(1, Integer.parseInt(Env.get(
+    "BUILD_CONCURRENCY",
+    String.valueOf(Runtime.getRuntime().availableProcessors() / 2)
+  )));
+
+  /** Jobs that may wait in front of each pipeline stage before upstream stages block. */
+  private static final int QUEUE_CAPACITY =
+    Integer.parseInt(Env.get("PIPELINE_QUEUE_CAPACITY", "2"));
+
+  /** Most recent uploads quoted in the prompt; older repeats are caught by {@link ScriptIndex}. */
+  private static final int HISTORY_SAMPLE =
+    Integer.parseInt(Env.get("PROMPT_HISTORY_SAMPLE", "15"));
+
+  /** Extra script requests made when the answer repeats an earlier video. */
+  private static final int DUP_RETRIES =
+    Integer.parseInt(Env.get("SCRIPT_DUP_RETRIES", "2"));
+
   public static void main(String[] args) {
     if (args.length < 2) {
       System.err.println("Usage: java vid.builder.Main <channelName|all> <repeatCount>");
@@ -155,31 +181,60 @@ Requirements:
       return;
     }
 
-    //  Loop and generate
-    for (String channelName : channelsToRun) {
-      String basePrompt = channelPrompts.get(channelName);
-
-      // read history so you don’t repeat stories
-      String history = readUploadHistory(AppPaths.historyFile(channelName));
-
-      for (int i = 0; i < repeatCount; i++) {
-        String fullPrompt = buildPrompt(basePrompt, history);
-        generateVid(fullPrompt, channelName);
+    // load (and incrementally refresh) the gameplay catalog up front, then
+    // keep pre-cut background clips topped up whenever the machine is idle
+    GameplayCatalog.get();
+    BackgroundPool.startFiller();
+    // build (or reuse) the Remotion bundle while the first scripts are written
+    Thread bundler = new Thread(RemotionBundle::get, "remotion-bundle");
+    bundler.setDaemon(true);
+    bundler.start();
+
+    //  Loop and generate — every video flows through a stage-overlapped
+    //  pipeline, so one video's script and TTS are fetched while another
+    //  one renders.
+    try (GenerationPipeline pipeline = newPipeline()) {
+      for (String channelName : channelsToRun) {
+        String basePrompt = channelPrompts.get(channelName);
+
+        // quote the latest uploads; the script index catches older repeats
+        String history = recentUploads(channelName);
+
+        for (int i = 0; i < repeatCount; i++) {
+          String fullPrompt = buildPrompt(basePrompt, history);
+          try {
+            pipeline.submit(VideoJob.create(channelName, fullPrompt));
+          } catch (IOException e) {
+            System.err.println("❌ Could not create job for " + channelName + ": " + e.getMessage());
+          }
+        }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
 
+    System.out.println("📊 OpenAI traffic:");
+    OpenAiClient.metrics().forEach(m -> System.out.println("   " + m));
   }
 
-  private static String readUploadHistory(Path historyFile) {
-    try {
-      if (Files.exists(historyFile)) {
-        List<String> lines = Files.readAllLines(historyFile);
-        return String.join("\n", lines);
-      }
-    } catch (IOException e) {
-      System.err.println("⚠️ Could not read history for " + historyFile + ": " + e);
-    }
-    return "";
+  private static GenerationPipeline newPipeline() {
+    return new GenerationPipeline(QUEUE_CAPACITY)
+      .stage("script", stageWorkers("SCRIPT", 2), Main::writeScript)
+      .stage("voice", stageWorkers("TTS", 2), Main::voiceAct)
+      .stage("background", stageWorkers("BACKGROUND", 2), Main::generateBackground)
+      .stage("captions", stageWorkers("CAPTIONS", 2), Main::generateCaptions)
+      .stage("render", BUILD_CONCURRENCY, Main::render)
+      .start();
+  }
+
+  private static int stageWorkers(String stage, int defaultWorkers) {
+    return Integer.parseInt(Env.get("PIPELINE_" + stage + "_WORKERS", String.valueOf(defaultWorkers)));
+  }
+
+  private static String recentUploads(String channelName) {
+    return UploadHistory.forChannel(channelName).recent(HISTORY_SAMPLE).stream()
+      .map(UploadHistory.Entry::toString)
+      .collect(Collectors.joining("\n"));
   }
 
   private static String buildPrompt(String basePrompt, String history) {
@@ -195,7 +250,7 @@ Requirements:
       Do not include any personal information, usernames, or links to external sites. doing so could get you shut down by YouTube.
       Use proper grammar, punctuation, and capitalization.
 
-      Previously uploaded videos (timestamp, filename):
+      Most recently uploaded videos (timestamp, filename):
       %s
 
 
@@ -204,28 +259,78 @@ Requirements:
       """.formatted(history, basePrompt);
   }
 
-  public static void generateVid(String prompt, String channelName) {
-    System.out.println(" vidbuilder starting for channel " + channelName + "…");
-    VidBuilder builder = new VidBuilder();
+  /** Builds a single video synchronously, one step after another. */
+  public static void generateVid(String prompt, String channelName) throws IOException {
+    try (VideoJob job = VideoJob.create(channelName, prompt)) {
+      System.out.println(" vidbuilder starting for channel " + channelName
+                         + " (job " + job.id() + ")…");
+      writeScript(job);
+      voiceAct(job);
+      generateBackground(job);
+      generateCaptions(job);
+      render(job);
+    } catch (JobFailedException e) {
+      System.err.println("❌ Job failed, nothing rendered: " + e.getMessage());
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      System.err.println("❌ Render failed: " + e.getMessage());
+    }
+  }
 
-    System.out.println("  • Generating script…");
-    SearchResult script = builder.scriptWriter(prompt);
+  // Pipeline stages ---------------------------------------------------------
+
+  private static void writeScript(VideoJob job) throws JobFailedException {
+    System.out.println("  • [" + job.id() + "] Generating script…");
+    ScriptIndex index = ScriptIndex.forChannel(job.channelName());
+    String prompt = job.prompt();
+    SearchResult script;
+    for (int attempt = 0; ; attempt++) {
+      script = job.builder().scriptWriter(prompt);
+      // AIscraper reports failures as placeholder results — never narrate those
+      if (script == null || script.text() == null || script.text().isBlank()
+          || "Error".equals(script.title()) || "Not found".equals(script.title())) {
+        throw new JobFailedException("No usable script: "
+          + (script == null ? "no result" : script.text()));
+      }
+
+      ScriptIndex.Match repeat = index.check(job.id(), script.title(), script.text());
+      if (repeat == null) break;
+      System.out.printf("    ↻ [%s] \"%s\" repeats \"%s\" (%.0f%% similar)%n",
+        job.id(), script.title(), repeat.title(), repeat.similarity() * 100);
+      if (attempt >= DUP_RETRIES) {
+        throw new JobFailedException("Every script repeated an earlier video, last: " + repeat.title());
+      }
+      prompt = job.prompt() + "\n\nDo NOT use the story \"" + repeat.title()
+        + "\" or anything like it — it was already covered. Pick a different one.";
+    }
+    job.setScript(script);
     System.out.println("    title: " + script.title());
     System.out.println("    text : " + script.text());
+  }
 
-    System.out.println("  • Generating audio…");
-    builder.voiceAct(script.text());
-
-    System.out.println("  • Generating background clip…");
-    builder.generateBackground();
+  private static void voiceAct(VideoJob job) throws JobFailedException {
+    System.out.println("  • [" + job.id() + "] Generating audio…");
+    // cut the background from an estimated length while TTS is in flight
+    job.builder().startBackground(job.script().text());
+    job.builder().voiceAct(job.script().text());
+  }
 
-    System.out.println("  • Generating captions…");
-    builder.generateCaptions();
+  private static void generateBackground(VideoJob job) throws JobFailedException {
+    System.out.println("  • [" + job.id() + "] Generating background clip…");
+    job.builder().generateBackground();
+  }
 
-    System.out.println("  • Rendering final video…");
-    Path pendingDir = AppPaths.pendingDir(channelName);
-    Renderer.renderFinalVideo(AppPaths.CAPTIONS_JSON.toString(), pendingDir.toString());
+  private static void generateCaptions(VideoJob job) throws JobFailedException {
+    System.out.println("  • [" + job.id() + "] Generating captions…");
+    job.builder().generateCaptions();
+  }
 
+  private static void render(VideoJob job) throws Exception {
+    System.out.println("  • [" + job.id() + "] Rendering final video…");
+    Path pendingDir = AppPaths.pendingDir(job.channelName());
+    Renderer.renderFinalVideo(job.workspace(), pendingDir.toString(), job.channelName());
+    ScriptIndex.forChannel(job.channelName()).add(job.id());
     System.out.println("✅ Video rendered → " + pendingDir + "\n");
   }
 }
@@ -0,0 +1,260 @@
+package vid.builder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Media duration probe with a bounded LRU cache keyed on
+ * (path, size, modification time), so a file is only probed again when it
+ * actually changes.
+ *
+ * <p>The cache holds up to {@code PROBE_CACHE_SIZE} entries and is persisted
+ * to {@link AppPaths#CACHE_DIR}{@code /probe-cache.tsv} in the background,
+ * so it survives restarts. {@link #durationsSec(Collection)} probes every
+ * uncached file with a single process: {@code ffprobe} only accepts one
+ * input, so the batch is handed to {@code ffmpeg -i a -i b …}, which reads
+ * each container header and reports all durations without decoding.
+ * That report is rounded to hundredths of a second, so WAV files are
+ * instead measured exactly from their header (sample data length over byte
+ * rate); chunk offsets summed from them do not drift.</p>
+ */
+public final class MediaProbe {
+    private static final int CAPACITY = Integer.parseInt(Env.get("PROBE_CACHE_SIZE", "4096"));
+    private static final Path CACHE_FILE = AppPaths.CACHE_DIR.resolve("probe-cache.tsv");
+    private static final Pattern INPUT_LINE = Pattern.compile("^Input #(\\d+), .*");
+    private static final Pattern DURATION_LINE =
+        Pattern.compile("^\\s+Duration: (\\d+):(\\d+):(\\d+(?:\\.\\d+)?),.*");
+
+    private record Key(String path, long size, long mtime) {
+        static Key of(Path media) throws IOException {
+            return new Key(media.toAbsolutePath().normalize().toString(),
+                           Files.size(media),
+                           Files.getLastModifiedTime(media).toMillis());
+        }
+    }
+
+    private static final Map<Key, Double> CACHE = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+    private static final ExecutorService SAVER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "probe-cache-saver");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicBoolean SAVE_QUEUED = new AtomicBoolean();
+
+    static {
+        load();
+    }
+
+    private MediaProbe() {
+        // Utility class — no instances.
+    }
+
+    /** Returns the duration of {@code media} in seconds, probing only on a cache miss. */
+    public static double durationSec(Path media) throws IOException, InterruptedException {
+        Key key = Key.of(media);
+        synchronized (CACHE) {
+            Double cached = CACHE.get(key);
+            if (cached != null) return cached;
+        }
+        double duration = probe(media);
+        put(key, duration);
+        return duration;
+    }
+
+    /**
+     * Returns the durations of all {@code media}, in the same order. Cached
+     * files cost nothing; the rest are probed together in one process.
+     */
+    public static List<Double> durationsSec(Collection<Path> media) throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>(media);
+        List<Key> keys = new ArrayList<>(files.size());
+        Double[] result = new Double[files.size()];
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            Key key = Key.of(files.get(i));
+            keys.add(key);
+            synchronized (CACHE) {
+                result[i] = CACHE.get(key);
+            }
+            if (result[i] == null && isWav(files.get(i))) {
+                result[i] = wavDurationSec(files.get(i));
+                put(key, result[i]);
+            }
+            if (result[i] == null) misses.add(i);
+        }
+
+        if (misses.size() == 1) {
+            int i = misses.get(0);
+            result[i] = probe(files.get(i));
+            put(keys.get(i), result[i]);
+        } else if (!misses.isEmpty()) {
+            List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-hide_banner", "-nostdin"));
+            for (int i : misses) {
+                cmd.add("-i");
+                cmd.add(files.get(i).toString());
+            }
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            List<String> lines = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8)
+                .lines().toList();
+            p.waitFor(); // exits non-zero because no output is given — that is expected
+
+            int current = -1;
+            for (String line : lines) {
+                Matcher in = INPUT_LINE.matcher(line);
+                if (in.matches()) {
+                    current = Integer.parseInt(in.group(1));
+                    continue;
+                }
+                Matcher d = DURATION_LINE.matcher(line);
+                if (d.matches() && current >= 0 && current < misses.size()) {
+                    int i = misses.get(current);
+                    result[i] = Integer.parseInt(d.group(1)) * 3600
+                              + Integer.parseInt(d.group(2)) * 60
+                              + Double.parseDouble(d.group(3));
+                    put(keys.get(i), result[i]);
+                }
+            }
+            for (int i : misses) {
+                if (result[i] == null) {
+                    throw new IOException("Could not read duration of " + files.get(i));
+                }
+            }
+        }
+        return List.of(result);
+    }
+
+    private static boolean isWav(Path media) {
+        return media.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".wav");
+    }
+
+    /**
+     * Exact length of a PCM WAV file: the size of its {@code data} chunk
+     * divided by the byte rate in its {@code fmt } chunk. A streamed file
+     * whose header still carries a placeholder size is measured by what is
+     * actually on disk.
+     */
+    static double wavDurationSec(Path wav) throws IOException {
+        try (FileChannel ch = FileChannel.open(wav, StandardOpenOption.READ)) {
+            ByteBuffer riff = read(ch, 0, 12);
+            if (riff.getInt(0) != 0x46464952 || riff.getInt(8) != 0x45564157) { // "RIFF", "WAVE"
+                throw new IOException("Not a WAV file: " + wav);
+            }
+            long byteRate = 0;
+            long pos = 12;
+            while (pos + 8 <= ch.size()) {
+                ByteBuffer header = read(ch, pos, 8);
+                int id = header.getInt(0);
+                long size = Integer.toUnsignedLong(header.getInt(4));
+                long body = pos + 8;
+                if (id == 0x20746D66) { // "fmt "
+                    byteRate = Integer.toUnsignedLong(read(ch, body, 12).getInt(8));
+                } else if (id == 0x61746164) { // "data"
+                    if (byteRate == 0) break;
+                    return Math.min(size, ch.size() - body) / (double) byteRate;
+                }
+                pos = body + size + (size & 1);
+            }
+            throw new IOException("No fmt/data chunks in WAV file " + wav);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new EOFException();
+        }
+        return buf;
+    }
+
+    private static double probe(Path media) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(
+            "ffprobe", "-v", "error",
+            "-show_entries", "format=duration",
+            "-of", "default=noprint_wrappers=1:nokey=1",
+            media.toString()
+        );
+        Process p = pb.start();
+        String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        // -v error keeps stderr to a line or two, so reading it second cannot block
+        String err = new String(p.getErrorStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        int exit = p.waitFor();
+        if (exit != 0) {
+            throw new IOException("ffprobe failed on " + media + " (exit code " + exit + ")"
+                + (err.isEmpty() ? "" : ": " + err));
+        }
+        try {
+            return Double.parseDouble(out);
+        } catch (NumberFormatException e) {
+            throw new IOException("ffprobe reported no duration for " + media
+                + (err.isEmpty() ? "" : ": " + err), e);
+        }
+    }
+
+    private static void put(Key key, double duration) {
+        synchronized (CACHE) {
+            CACHE.put(key, duration);
+        }
+        queueSave();
+    }
+
+    private static void load() {
+        if (!Files.exists(CACHE_FILE)) return;
+        try {
+            for (String line : Files.readAllLines(CACHE_FILE, StandardCharsets.UTF_8)) {
+                String[] f = line.split("\t");
+                if (f.length != 4) continue;
+                CACHE.put(new Key(f[0], Long.parseLong(f[1]), Long.parseLong(f[2])), Double.parseDouble(f[3]));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Ignoring unreadable probe cache " + CACHE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    /** Coalesces cache writes onto the saver thread. */
+    private static void queueSave() {
+        if (!SAVE_QUEUED.compareAndSet(false, true)) return;
+        SAVER.execute(() -> {
+            SAVE_QUEUED.set(false);
+            StringBuilder sb = new StringBuilder();
+            synchronized (CACHE) {
+                for (Map.Entry<Key, Double> e : CACHE.entrySet()) {
+                    Key k = e.getKey();
+                    sb.append(k.path()).append('\t').append(k.size()).append('\t')
+                      .append(k.mtime()).append('\t').append(e.getValue()).append('\n');
+                }
+            }
+            try {
+                Files.createDirectories(CACHE_FILE.getParent());
+                Path tmp = Files.createTempFile(CACHE_FILE.getParent(), "probe-cache-", ".tmp");
+                Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+                Files.move(tmp, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not save probe cache: " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,388 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The single HTTP client used for every OpenAI call ({@link AIscraper},
+ * {@link SpeechSynthesizer} and {@link WhisperTranscriber}).
+ *
+ * <p>Sharing one {@link HttpClient} keeps connections, TLS sessions and
+ * HTTP/2 streams alive across requests. It runs on a small fixed pool of
+ * daemon threads ({@code OPENAI_HTTP_THREADS}) and fails connection
+ * attempts after {@code OPENAI_CONNECT_TIMEOUT_SEC}.</p>
+ *
+ * <p>Each {@link Endpoint} has its own request timeout and a cap on
+ * requests in flight, so a burst of TTS chunks cannot starve script
+ * writing or transcription. Both can be overridden with
+ * {@code OPENAI_<ENDPOINT>_TIMEOUT_SEC} and
+ * {@code OPENAI_<ENDPOINT>_CONCURRENCY}, e.g.
+ * {@code OPENAI_SPEECH_CONCURRENCY=8}.</p>
+ *
+ * <p>On top of that, every endpoint has a process-wide request budget
+ * ({@code OPENAI_<ENDPOINT>_RPM}) and token budget
+ * ({@code OPENAI_<ENDPOINT>_TPM}), enforced by {@link TokenBucket}s shared
+ * by all channels and jobs. Callers that would exceed a budget wait their
+ * turn instead of failing. If OpenAI still answers {@code 429}, the
+ * endpoint is paused for the {@code Retry-After} it asks for and the
+ * request is queued again, up to {@code OPENAI_MAX_429_RETRIES} times.
+ * Throughput, wait times and 429 counts are available from
+ * {@link #metrics()}.</p>
+ *
+ * <p>Transport errors, timeouts and {@code 408}/{@code 5xx} answers are
+ * retried up to {@code OPENAI_MAX_ATTEMPTS} times with full-jitter
+ * exponential backoff. Each endpoint has a {@link CircuitBreaker} that
+ * stops calling it for {@code OPENAI_BREAKER_COOLDOWN_SEC} after
+ * {@code OPENAI_BREAKER_FAILURES} failed calls in a row, so jobs fail fast
+ * while OpenAI is down. A {@code 429} is neither retried here nor counted
+ * as a failure: OpenAI is up but busy, and the pause-and-requeue above
+ * already handles it. Setting {@code OPENAI_<ENDPOINT>_HEDGE_MS} sends a
+ * second, identical request when the first has not answered within that
+ * time and uses the first successful answer.</p>
+ */
+public final class OpenAiClient {
+    private static final String API_KEY = Env.get("OPENAI_API_KEY");
+
+    private static final int MAX_429_RETRIES = Integer.parseInt(Env.get("OPENAI_MAX_429_RETRIES", "8"));
+    /** Pause applied after a 429 that carries no usable {@code Retry-After}. */
+    private static final long DEFAULT_RETRY_AFTER_MS = 5_000;
+    /** Waits longer than this are logged as they happen. */
+    private static final long LOG_WAIT_MS = 1_000;
+    private static final int MAX_ATTEMPTS = Integer.parseInt(Env.get("OPENAI_MAX_ATTEMPTS", "4"));
+    private static final long BACKOFF_BASE_MS = Long.parseLong(Env.get("OPENAI_BACKOFF_BASE_MS", "500"));
+    private static final long BACKOFF_MAX_MS = Long.parseLong(Env.get("OPENAI_BACKOFF_MAX_MS", "30000"));
+
+    /** OpenAI endpoints used by the pipeline, with their default limits. */
+    public enum Endpoint {
+        RESPONSES("https://api.openai.com/v1/responses", 4, 180, 500, 30_000),
+        SPEECH("https://api.openai.com/v1/audio/speech", 8, 120, 500, 0),
+        TRANSCRIPTIONS("https://api.openai.com/v1/audio/transcriptions", 4, 300, 500, 0);
+
+        final URI uri;
+        final Semaphore permits;
+        final Duration timeout;
+        final TokenBucket requestBudget;
+        final TokenBucket tokenBudget;
+        final long hedgeDelayMs;
+        final CircuitBreaker breaker;
+        final Stats stats = new Stats();
+
+        Endpoint(String uri, int defaultConcurrency, int defaultTimeoutSec, long defaultRpm, long defaultTpm) {
+            String prefix = "OPENAI_" + name() + "_";
+            this.uri = URI.create(uri);
+            this.permits = new Semaphore(
+                Integer.parseInt(Env.get(prefix + "CONCURRENCY", String.valueOf(defaultConcurrency))), true);
+            this.timeout = Duration.ofSeconds(
+                Long.parseLong(Env.get(prefix + "TIMEOUT_SEC", String.valueOf(defaultTimeoutSec))));
+            this.requestBudget = new TokenBucket(
+                Long.parseLong(Env.get(prefix + "RPM", String.valueOf(defaultRpm))));
+            this.tokenBudget = new TokenBucket(
+                Long.parseLong(Env.get(prefix + "TPM", String.valueOf(defaultTpm))));
+            this.hedgeDelayMs = Long.parseLong(Env.get(prefix + "HEDGE_MS", "0"));
+            this.breaker = new CircuitBreaker("OpenAI " + name(),
+                Integer.parseInt(Env.get("OPENAI_BREAKER_FAILURES", "5")),
+                Long.parseLong(Env.get("OPENAI_BREAKER_COOLDOWN_SEC", "30")) * 1000);
+        }
+    }
+
+    /** Snapshot of one endpoint's traffic since startup. */
+    public record Metrics(
+        Endpoint endpoint,
+        long requests,
+        long tokens,
+        long throttled,
+        long retries,
+        long hedged,
+        long avgWaitMs,
+        long maxWaitMs,
+        double requestsPerMinute
+    ) {
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "%s: %d requests (%.1f/min), %d tokens, avg wait %d ms, max wait %d ms, "
+                    + "%d × 429, %d retries, %d hedged",
+                endpoint, requests, requestsPerMinute, tokens, avgWaitMs, maxWaitMs,
+                throttled, retries, hedged);
+        }
+    }
+
+    private static final class Stats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder tokens = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder hedged = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final long startNanos = System.nanoTime();
+    }
+
+    private static final ExecutorService EXECUTOR;
+    private static final HttpClient HTTP;
+    /** Runs the competing attempts of hedged requests. */
+    private static final ExecutorService HEDGE_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "openai-hedge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        AtomicInteger threads = new AtomicInteger();
+        EXECUTOR = Executors.newFixedThreadPool(
+            Integer.parseInt(Env.get("OPENAI_HTTP_THREADS", "4")),
+            r -> {
+                Thread t = new Thread(r, "openai-http-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(
+                Long.parseLong(Env.get("OPENAI_CONNECT_TIMEOUT_SEC", "10"))))
+            .executor(EXECUTOR)
+            .build();
+    }
+
+    private OpenAiClient() {
+        // Utility class — no instances.
+    }
+
+    /**
+     * Starts a request to {@code endpoint} with its URI, timeout and
+     * {@code Authorization} header already set.
+     */
+    public static HttpRequest.Builder request(Endpoint endpoint) {
+        return HttpRequest.newBuilder()
+            .uri(endpoint.uri)
+            .timeout(endpoint.timeout)
+            .header("Authorization", "Bearer " + API_KEY);
+    }
+
+    /**
+     * Sends {@code request} on the shared client and returns the response.
+     *
+     * <p>Waits first for the endpoint's request and token budgets
+     * ({@code tokens} is the caller's estimate of what the call will consume)
+     * and for a free in-flight slot. {@code 429}s are queued again after
+     * their {@code Retry-After}; transport errors, {@code 408} and
+     * {@code 5xx} are retried with backoff. {@code handlers} is asked for a
+     * fresh handler for every attempt, so retried or hedged attempts never
+     * share one. Once retries run out the last response is returned, or the
+     * last exception thrown.</p>
+     *
+     * @throws CircuitBreaker.OpenException if the endpoint has been failing
+     *         and is not being called right now
+     */
+    public static <T> HttpResponse<T> send(
+        Endpoint endpoint,
+        HttpRequest request,
+        Supplier<HttpResponse.BodyHandler<T>> handlers,
+        long tokens
+    ) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            endpoint.breaker.acquire();
+            boolean ok = false;
+            HttpResponse<T> response;
+            try {
+                response = endpoint.hedgeDelayMs > 0
+                    ? sendHedged(endpoint, request, handlers, tokens)
+                    : sendOnce(endpoint, request, handlers.get(), tokens);
+                ok = !isTransient(response.statusCode());
+            } catch (IOException e) {
+                if (attempt >= MAX_ATTEMPTS) throw e;
+                backoff(endpoint, attempt, e.toString());
+                continue;
+            } finally {
+                if (ok) endpoint.breaker.onSuccess();
+                else endpoint.breaker.onFailure();
+            }
+            if (ok || attempt >= MAX_ATTEMPTS) {
+                return response;
+            }
+            backoff(endpoint, attempt, "HTTP " + response.statusCode());
+        }
+    }
+
+    /**
+     * Whether a status is worth retrying and counts against the breaker:
+     * timeouts and server errors. A {@code 429} that outlived the
+     * {@code OPENAI_MAX_429_RETRIES} requeues in {@link #sendOnce} is
+     * returned as is.
+     */
+    private static boolean isTransient(int status) {
+        return status == 408 || status >= 500;
+    }
+
+    /** Sleeps a random time up to {@code base × 2^(attempt-1)}, capped ("full jitter"). */
+    private static void backoff(Endpoint endpoint, int attempt, String reason) throws InterruptedException {
+        endpoint.stats.retries.increment();
+        long ceiling = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        System.err.printf("⚠️ OpenAI %s attempt %d/%d failed (%s), retrying in %d ms%n",
+            endpoint, attempt, MAX_ATTEMPTS, reason, delay);
+        TimeUnit.MILLISECONDS.sleep(delay);
+    }
+
+    /**
+     * Sends the request and, if no answer arrived after the endpoint's hedge
+     * delay, a second copy of it; returns the first successful answer and
+     * cancels the other. If the first to finish failed or was transient, the
+     * other one is waited for, and the first is only used if that one does
+     * no better.
+     */
+    private static <T> HttpResponse<T> sendHedged(
+        Endpoint endpoint,
+        HttpRequest request,
+        Supplier<HttpResponse.BodyHandler<T>> handlers,
+        long tokens
+    ) throws IOException, InterruptedException {
+        CompletionService<HttpResponse<T>> attempts = new ExecutorCompletionService<>(HEDGE_EXECUTOR);
+        List<Future<HttpResponse<T>>> started = new ArrayList<>(2);
+        started.add(attempts.submit(() -> sendOnce(endpoint, request, handlers.get(), tokens)));
+        try {
+            Future<HttpResponse<T>> first = attempts.poll(endpoint.hedgeDelayMs, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                endpoint.stats.hedged.increment();
+                started.add(attempts.submit(() -> sendOnce(endpoint, request, handlers.get(), tokens)));
+                first = attempts.take();
+            }
+            HttpResponse<T> result;
+            try {
+                result = first.get();
+            } catch (ExecutionException e) {
+                if (started.size() == 1) throw unwrap(e);
+                try {
+                    return attempts.take().get();
+                } catch (ExecutionException second) {
+                    throw unwrap(second);
+                }
+            }
+            if (started.size() == 2 && isTransient(result.statusCode())) {
+                try {
+                    HttpResponse<T> other = attempts.take().get();
+                    if (!isTransient(other.statusCode())) return other;
+                } catch (ExecutionException e) {
+                    // the other attempt failed outright; the transient answer is still an answer
+                }
+            }
+            return result;
+        } finally {
+            started.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e) throws InterruptedException {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException io) return io;
+        if (cause instanceof InterruptedException ie) throw ie;
+        if (cause instanceof RuntimeException re) throw re;
+        return new IOException(cause);
+    }
+
+    /**
+     * One rate-limited call: waits for the budgets and an in-flight slot,
+     * then sends; {@code 429}s pause the endpoint and are queued again.
+     */
+    private static <T> HttpResponse<T> sendOnce(
+        Endpoint endpoint,
+        HttpRequest request,
+        HttpResponse.BodyHandler<T> handler,
+        long tokens
+    ) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            long waited = endpoint.requestBudget.acquire(1) + endpoint.tokenBudget.acquire(tokens);
+            long permitStart = System.nanoTime();
+            endpoint.permits.acquire();
+            waited += System.nanoTime() - permitStart;
+            record(endpoint, tokens, waited);
+
+            boolean canRetry = attempt < MAX_429_RETRIES;
+            HttpResponse<T> response;
+            try {
+                // a throttled response's body is discarded, so handlers that
+                // write to disk or count bytes only ever see the real answer
+                response = HTTP.send(request, info -> info.statusCode() == 429 && canRetry
+                    ? HttpResponse.BodySubscribers.replacing(null)
+                    : handler.apply(info));
+            } finally {
+                endpoint.permits.release();
+            }
+            if (response.statusCode() != 429 || !canRetry) {
+                return response;
+            }
+
+            long retryAfterMs = retryAfterMillis(response);
+            endpoint.stats.throttled.increment();
+            endpoint.requestBudget.pauseUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMs));
+            System.err.printf("⚠️ OpenAI %s rate-limited (429), retrying in %d ms (attempt %d/%d)%n",
+                endpoint, retryAfterMs, attempt + 1, MAX_429_RETRIES);
+        }
+    }
+
+    /** Current traffic figures for every endpoint. */
+    public static List<Metrics> metrics() {
+        List<Metrics> all = new ArrayList<>();
+        for (Endpoint e : Endpoint.values()) {
+            Stats s = e.stats;
+            long requests = s.requests.sum();
+            double minutes = Math.max(1e-9, (System.nanoTime() - s.startNanos) / 60e9);
+            all.add(new Metrics(
+                e,
+                requests,
+                s.tokens.sum(),
+                s.throttled.sum(),
+                s.retries.sum(),
+                s.hedged.sum(),
+                requests == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(s.waitNanos.sum() / requests),
+                TimeUnit.NANOSECONDS.toMillis(s.maxWaitNanos.get()),
+                requests / minutes));
+        }
+        return all;
+    }
+
+    private static void record(Endpoint endpoint, long tokens, long waitedNanos) {
+        Stats s = endpoint.stats;
+        s.requests.increment();
+        s.tokens.add(tokens);
+        s.waitNanos.add(waitedNanos);
+        s.maxWaitNanos.accumulateAndGet(waitedNanos, Math::max);
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(waitedNanos);
+        if (waitedMs > LOG_WAIT_MS) {
+            System.out.printf("⏳ OpenAI %s request waited %d ms for its rate budget%n", endpoint, waitedMs);
+        }
+    }
+
+    /** Reads {@code retry-after-ms} or {@code Retry-After} (seconds), falling back to a default. */
+    private static long retryAfterMillis(HttpResponse<?> response) {
+        try {
+            var ms = response.headers().firstValue("retry-after-ms");
+            if (ms.isPresent()) return Math.max(0, (long) Double.parseDouble(ms.get()));
+            var sec = response.headers().firstValue("Retry-After");
+            if (sec.isPresent()) return Math.max(0, (long) (Double.parseDouble(sec.get()) * 1000));
+        } catch (NumberFormatException e) {
+            // HTTP-date form or garbage — use the default
+        }
+        return DEFAULT_RETRY_AFTER_MS;
+    }
+}
@@ -0,0 +1,137 @@
+package vid.builder;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpResponse.BodyHandler} wrapper that measures a download while
+ * the wrapped handler consumes it: time to response headers, time to the
+ * first body byte, bytes received so far and, when the server sends a
+ * {@code Content-Length}, the fraction complete.
+ *
+ * <p>Create one per request, just before sending it; all timings are
+ * relative to construction. The getters are safe to read from another
+ * thread while the download is running. When created with a label, a
+ * progress line is also printed while the body arrives, at most once per
+ * second.</p>
+ */
+public final class ProgressBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+    private static final long REPORT_EVERY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final HttpResponse.BodyHandler<T> delegate;
+    private final String label;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong lastReportNanos = new AtomicLong(startNanos);
+    private final AtomicLong headersNanos = new AtomicLong(-1);
+    private final AtomicLong firstByteNanos = new AtomicLong(-1);
+    private final AtomicLong doneNanos = new AtomicLong(-1);
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long contentLength = -1;
+
+    public ProgressBodyHandler(HttpResponse.BodyHandler<T> delegate) {
+        this(delegate, null);
+    }
+
+    /** Also prints throttled progress for the download, prefixed with {@code label}. */
+    public ProgressBodyHandler(HttpResponse.BodyHandler<T> delegate, String label) {
+        this.delegate = delegate;
+        this.label = label;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo info) {
+        headersNanos.set(System.nanoTime());
+        contentLength = info.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return new CountingSubscriber(delegate.apply(info));
+    }
+
+    /** Milliseconds until the response headers arrived, or {@code -1}. */
+    public long headersMillis() {
+        return elapsedMillis(headersNanos.get());
+    }
+
+    /** Milliseconds until the first body byte arrived, or {@code -1}. */
+    public long firstByteMillis() {
+        return elapsedMillis(firstByteNanos.get());
+    }
+
+    /** Milliseconds until the body was complete, or {@code -1} while still running. */
+    public long totalMillis() {
+        return elapsedMillis(doneNanos.get());
+    }
+
+    /** Body bytes received so far. */
+    public long bytes() {
+        return bytes.get();
+    }
+
+    /** Fraction of the body received, or {@code -1} if the length is unknown. */
+    public double progress() {
+        long length = contentLength;
+        return length > 0 ? Math.min(1.0, (double) bytes.get() / length) : -1;
+    }
+
+    private void report(long now) {
+        long last = lastReportNanos.get();
+        if (now - last < REPORT_EVERY_NANOS || !lastReportNanos.compareAndSet(last, now)) return;
+        double pct = progress();
+        System.out.printf(Locale.US, "  ⬇️ %s: %d KB%s after %d ms%n",
+            label, bytes.get() / 1024, pct < 0 ? "" : String.format(Locale.US, " (%.0f%%)", pct * 100),
+            TimeUnit.NANOSECONDS.toMillis(now - startNanos));
+    }
+
+    private long elapsedMillis(long nanos) {
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos - startNanos);
+    }
+
+    private final class CountingSubscriber implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> inner;
+
+        CountingSubscriber(HttpResponse.BodySubscriber<T> inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return inner.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            inner.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            long n = 0;
+            for (ByteBuffer b : items) {
+                n += b.remaining();
+            }
+            if (n > 0) {
+                long now = System.nanoTime();
+                firstByteNanos.compareAndSet(-1, now);
+                bytes.addAndGet(n);
+                if (label != null) report(now);
+            }
+            inner.onNext(items);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            doneNanos.compareAndSet(-1, System.nanoTime());
+            inner.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            doneNanos.compareAndSet(-1, System.nanoTime());
+            inner.onComplete();
+        }
+    }
+}
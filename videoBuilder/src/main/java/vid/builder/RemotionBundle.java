@@ -0,0 +1,158 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Prebuilt Remotion bundle shared by every render.
+ *
+ * <p>All per-video data reaches the composition through {@code --props},
+ * so the bundle only depends on the Remotion sources. It is built once with
+ * {@code npx remotion bundle} into {@link AppPaths#CACHE_DIR}{@code /remotion-bundle-<hash>},
+ * where the hash covers the paths, sizes and modification times of
+ * {@code src/}, {@code remotion.config.ts} and {@code package.json}; it is
+ * rebuilt only when one of those changes.</p>
+ *
+ * <p>The bundler copies {@code public/} as it was at bundling time, so the
+ * bundle's {@code public/jobs} is replaced by a symlink to the live
+ * {@link AppPaths#JOBS_DIR}; job assets written later are served from
+ * there. If the bundle cannot be built or linked, {@link #serveUrl()}
+ * falls back to the entry point and Remotion bundles per render as
+ * before.</p>
+ */
+public final class RemotionBundle {
+  private static final String ENTRY_POINT = "src/index.ts";
+  private static final String DIR_PREFIX = "remotion-bundle-";
+
+  private static Path current;
+  private static boolean failed;
+
+  private RemotionBundle() {
+    // Utility class — no instances.
+  }
+
+  /**
+   * Returns what to pass to {@code remotion render} as its serve URL: the
+   * absolute path of an up-to-date bundle, or the entry point if no bundle
+   * is available.
+   */
+  public static String serveUrl() {
+    Path bundle = get();
+    return bundle != null ? bundle.toString() : ENTRY_POINT;
+  }
+
+  /** Returns the up-to-date bundle directory, building it if needed, or {@code null}. */
+  public static synchronized Path get() {
+    if (failed) return null;
+    try {
+      Path dir = AppPaths.CACHE_DIR.resolve(DIR_PREFIX + fingerprint()).toAbsolutePath();
+      if (dir.equals(current)) return current;
+      if (!Files.exists(dir.resolve("index.html"))) {
+        build(dir);
+      }
+      linkJobs(dir);
+      deleteStale(dir);
+      current = dir;
+      return current;
+    } catch (Exception e) {
+      System.err.println("⚠️ Could not prepare Remotion bundle, bundling per render: " + e.getMessage());
+      failed = true;
+      return null;
+    }
+  }
+
+  private static void build(Path dir) throws IOException, InterruptedException {
+    System.out.println("📦 Bundling Remotion project → " + dir);
+    Path staging = dir.resolveSibling(dir.getFileName() + ".tmp");
+    deleteRecursively(staging);
+    Files.createDirectories(staging.getParent());
+
+    ProcessBuilder pb = new ProcessBuilder(
+      AppPaths.NPX,
+      "remotion",
+      "bundle",
+      ENTRY_POINT,
+      "--out-dir=" + staging
+    );
+    pb.directory(AppPaths.VIDRENDERER_DIR.toFile());
+    pb.inheritIO();
+    int exit = pb.start().waitFor();
+    if (exit != 0) {
+      deleteRecursively(staging);
+      throw new IOException("remotion bundle failed with exit code " + exit);
+    }
+    deleteRecursively(dir);
+    Files.move(staging, dir);
+  }
+
+  /** Points the bundle's {@code public/jobs} at the live jobs directory. */
+  private static void linkJobs(Path dir) throws IOException {
+    Path link = dir.resolve("public").resolve("jobs");
+    Path target = AppPaths.JOBS_DIR.toAbsolutePath();
+    if (Files.isSymbolicLink(link) && Files.readSymbolicLink(link).equals(target)) return;
+
+    Files.createDirectories(target);
+    Files.createDirectories(link.getParent());
+    deleteRecursively(link);
+    Files.createSymbolicLink(link, target);
+  }
+
+  /** Removes bundles built from older sources. */
+  private static void deleteStale(Path keep) {
+    try (Stream<Path> dirs = Files.list(keep.getParent())) {
+      for (Path d : dirs.filter(p -> p.getFileName().toString().startsWith(DIR_PREFIX)).toList()) {
+        if (!d.equals(keep)) deleteRecursively(d);
+      }
+    } catch (IOException e) {
+      System.err.println("⚠️ Could not remove stale Remotion bundles: " + e.getMessage());
+    }
+  }
+
+  /** Hash of the inputs that affect the bundle. */
+  private static String fingerprint() throws IOException {
+    Path root = AppPaths.VIDRENDERER_DIR;
+    MessageDigest sha;
+    try {
+      sha = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    List<Path> inputs;
+    try (Stream<Path> src = Files.walk(root.resolve("src"))) {
+      inputs = Stream.concat(
+          src.filter(Files::isRegularFile),
+          Stream.of(root.resolve("remotion.config.ts"), root.resolve("package.json")).filter(Files::exists))
+        .sorted()
+        .toList();
+    }
+    for (Path p : inputs) {
+      String line = root.relativize(p) + "\t" + Files.size(p) + "\t"
+        + Files.getLastModifiedTime(p).toMillis() + "\n";
+      sha.update(line.getBytes(StandardCharsets.UTF_8));
+    }
+    return HexFormat.of().formatHex(sha.digest()).substring(0, 16);
+  }
+
+  /** Deletes {@code path}; symlinks are removed without following them. */
+  private static void deleteRecursively(Path path) throws IOException {
+    if (Files.isSymbolicLink(path)) {
+      Files.delete(path);
+      return;
+    }
+    if (!Files.exists(path)) return;
+    try (Stream<Path> walk = Files.walk(path)) {
+      for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(p);
+      }
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package vid.builder;
+
+import java.nio.file.Path;
+
+/**
+ * A way of turning a {@link JobWorkspace}'s props into the final MP4.
+ * {@link Renderer} picks the backend from {@code RENDER_BACKEND} in
+ * {@code .env}.
+ */
+@FunctionalInterface
+public interface RenderBackend {
+  /**
+   * Renders the {@code CaptionedShort} composition for {@code workspace}.
+   *
+   * @param workspace  workspace holding the job's intermediate files
+   * @param propsJson  Remotion input props written for this job
+   * @param output     absolute path of the MP4 to produce
+   * @throws Exception if the render did not produce {@code output}
+   */
+  void render(JobWorkspace workspace, Path propsJson, Path output) throws Exception;
+}
@@ -0,0 +1,200 @@
+package vid.builder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+/**
+ * Long-lived Remotion render service. Starts {@code render-server.mjs} in
+ * {@link AppPaths#VIDRENDERER_DIR} once per process; the sidecar opens
+ * Chromium a single time against the shared {@link RemotionBundle} (or
+ * bundles the project itself if none is available), then renders every job
+ * it receives, up to {@code RENDER_CONCURRENCY} at once.
+ *
+ * <p>The protocol is one JSON object per line. Java writes
+ * {@code {"id","props","output"}} to the sidecar's stdin; the sidecar
+ * answers on stdout with {@code ready}, {@code progress}, {@code done} or
+ * {@code error} messages carrying the same {@code id}. Its own logging goes
+ * to stderr, which is inherited.</p>
+ *
+ * <p>If the sidecar dies, every in-flight render fails and the next call
+ * to {@link #get()} starts a fresh one. A sidecar that sends nothing for
+ * {@code RENDER_STALL_MIN} while renders are outstanding (for example a
+ * hung Chromium) is killed, which fails those renders the same way.</p>
+ */
+public final class RenderDaemon implements RenderBackend {
+  private static final int CONCURRENCY =
+    Integer.parseInt(Env.get("RENDER_CONCURRENCY", "2"));
+  private static final long STARTUP_TIMEOUT_MIN = 5;
+  private static final long STALL_NANOS =
+    TimeUnit.MINUTES.toNanos(Long.parseLong(Env.get("RENDER_STALL_MIN", "10")));
+
+  private static RenderDaemon instance;
+  private static boolean unavailable;
+
+  private final Process process;
+  private final BufferedWriter stdin;
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
+  private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+  private final AtomicLong ids = new AtomicLong();
+  /** Set by the reader once the sidecar's stdout has closed. */
+  private volatile boolean dead;
+  private volatile long lastMessageNanos = System.nanoTime();
+
+  private RenderDaemon(Process process) {
+    this.process = process;
+    this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+    Thread reader = new Thread(this::readReplies, "render-daemon-reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Returns the running daemon, starting it if needed, or {@code null} if
+   * the sidecar could not be started (in which case callers should fall
+   * back to the CLI).
+   */
+  public static synchronized RenderDaemon get() {
+    if (instance != null && !instance.dead && instance.process.isAlive()) return instance;
+    if (unavailable) return null;
+    try {
+      instance = start();
+      return instance;
+    } catch (Exception e) {
+      System.err.println("⚠️ Render daemon unavailable, falling back to the Remotion CLI: " + e.getMessage());
+      unavailable = true;
+      instance = null;
+      return null;
+    }
+  }
+
+  private static RenderDaemon start() throws Exception {
+    System.out.println("🖥️ Starting Remotion render daemon…");
+    List<String> cmd = new ArrayList<>(List.of(
+      AppPaths.NODE,
+      "render-server.mjs",
+      AppPaths.JOBS_DIR.toAbsolutePath().toString()
+    ));
+    Path bundle = RemotionBundle.get();
+    if (bundle != null) cmd.add(bundle.toString());
+    ProcessBuilder pb = new ProcessBuilder(cmd);
+    pb.directory(AppPaths.VIDRENDERER_DIR.toFile());
+    pb.environment().put("RENDER_CONCURRENCY", String.valueOf(CONCURRENCY));
+    pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+    RenderDaemon daemon = new RenderDaemon(pb.start());
+    Runtime.getRuntime().addShutdownHook(new Thread(daemon.process::destroy));
+    try {
+      daemon.ready.get(STARTUP_TIMEOUT_MIN, TimeUnit.MINUTES);
+    } catch (Exception e) {
+      daemon.process.destroyForcibly();
+      throw e;
+    }
+    System.out.println("🖥️ Render daemon ready (concurrency " + CONCURRENCY + ")");
+    return daemon;
+  }
+
+  /** Queues a render on the sidecar and waits for it to finish. */
+  @Override
+  public void render(JobWorkspace workspace, Path propsJson, Path output) throws Exception {
+    String id = workspace.id() + "#" + ids.incrementAndGet();
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    pending.put(id, done);
+    // the reader sets dead before failing pending renders, so a render
+    // registered after that sweep is caught here
+    if (dead) {
+      pending.remove(id);
+      throw new IOException("Render daemon exited before job " + id + " was sent");
+    }
+
+    JSONObject job = new JSONObject()
+      .put("id", id)
+      .put("props", propsJson.toAbsolutePath().toString())
+      .put("output", output.toAbsolutePath().toString());
+    try {
+      synchronized (stdin) {
+        stdin.write(job.toString());
+        stdin.newLine();
+        stdin.flush();
+      }
+      await(done, id);
+    } catch (ExecutionException e) {
+      throw new IOException("Render daemon failed job " + id + ": " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      pending.remove(id);
+    }
+  }
+
+  /**
+   * Waits for {@code done}, killing the sidecar if it goes quiet for longer
+   * than {@code RENDER_STALL_MIN}; the next {@link #get()} starts a new one.
+   */
+  private void await(CompletableFuture<Void> done, String id) throws Exception {
+    while (true) {
+      try {
+        done.get(1, TimeUnit.MINUTES);
+        return;
+      } catch (TimeoutException e) {
+        if (System.nanoTime() - lastMessageNanos > STALL_NANOS) {
+          System.err.println("‼ Render daemon silent for " + TimeUnit.NANOSECONDS.toMinutes(STALL_NANOS)
+            + " min, restarting it");
+          process.destroyForcibly();
+          throw new IOException("Render daemon stalled on job " + id);
+        }
+      }
+    }
+  }
+
+  private void readReplies() {
+    try (BufferedReader r = new BufferedReader(
+           new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        lastMessageNanos = System.nanoTime();
+        JSONObject msg;
+        try {
+          msg = new JSONObject(line);
+        } catch (Exception e) {
+          System.out.println("[render-daemon] " + line);
+          continue;
+        }
+        String id = msg.optString("id");
+        switch (msg.optString("type")) {
+          case "ready" -> ready.complete(null);
+          case "progress" -> System.out.printf(Locale.US, "  🎞️ [%s] %.0f%%%n", id, msg.optDouble("progress") * 100);
+          case "done" -> complete(id, null);
+          case "error" -> complete(id, new IOException(msg.optString("message", "unknown error")));
+          default -> System.out.println("[render-daemon] " + line);
+        }
+      }
+    } catch (IOException e) {
+      // stream closed — handled below
+    }
+    IOException died = new IOException("render daemon exited");
+    dead = true;
+    ready.completeExceptionally(died);
+    pending.values().forEach(f -> f.completeExceptionally(died));
+  }
+
+  private void complete(String id, Exception error) {
+    CompletableFuture<Void> f = pending.get(id);
+    if (f == null) return;
+    if (error == null) f.complete(null);
+    else f.completeExceptionally(error);
+  }
+}
@@ -2,71 +2,198 @@ package vid.builder;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 
 import org.json.JSONArray;
+import org.json.JSONObject;
 
 /**
- * Invokes Remotion (via {@code npx remotion render}) to turn the
- * background clip, speech audio, and captions JSON into the final MP4.
+ * Invokes Remotion to turn the background clip, speech audio, and captions
+ * JSON of a {@link JobWorkspace} into the final MP4.
+ *
+ * <p>By default renders go to the long-lived {@link RenderDaemon}, which
+ * keeps the Remotion bundle and Chromium warm between videos. Setting
+ * {@code RENDER_BACKEND=cli} spawns {@code npx remotion render} per video
+ * instead, and {@code RENDER_BACKEND=chunked} splits each video into frame
+ * ranges rendered in parallel by {@link ChunkedRenderer}, and
+ * {@code RENDER_BACKEND=ffmpeg} burns the captions in with a single ffmpeg
+ * pass via {@link FfmpegRenderer}. Any channel can override the choice
+ * with {@code <CHANNEL>_RENDER_BACKEND}, e.g. {@code CHANNEL_1_RENDER_BACKEND}.</p>
  *
  * <p>The output file is named after the first caption line so that the
- * upload step can use it as the video title.</p>
+ * upload step can use it as the video title. It is rendered into a hidden
+ * {@code .rendering/} folder inside the output directory and moved into
+ * place atomically once complete, so the upload manager's folder watcher
+ * never sees a half-written MP4. The name is claimed for the whole render,
+ * so parallel jobs with the same first caption get distinct files, and the
+ * staged file is prefixed with the job's ID. (It keeps its {@code .mp4}
+ * extension because Remotion and ffmpeg pick the container from it.)</p>
  */
 public class Renderer {
+  /** {@code daemon} (default), {@code chunked}, {@code ffmpeg} or {@code cli}. */
+  private static final String BACKEND = Env.get("RENDER_BACKEND", "daemon");
+  /** Hidden folder inside the output directory where renders are written before being moved in. */
+  private static final String STAGING_DIR = ".rendering";
+  /** Output files claimed by renders still in progress, so parallel jobs never pick the same name. */
+  private static final Set<Path> RESERVED = new HashSet<>();
+  /** Frame rate of the {@code CaptionedShort} composition (see {@code Root.tsx}). */
+  static final int FPS = 30;
+
   /**
    * Renders the {@code CaptionedShort} composition to an MP4 in
-   * {@code outputDirectory}, using the captions at {@code captionsJsonPath}
-   * as the Remotion input props.
+   * {@code outputDirectory}. The job's background clip, speech, captions and
+   * precomputed length in frames are written to
+   * {@link JobWorkspace#propsJson()} and handed to Remotion as input props,
+   * so nothing under {@code src/} changes between videos.
    *
-   * @param captionsJsonPath path to a Remotion captions JSON file
-   * @param outputDirectory  directory where the final MP4 will be written
+   * @param workspace       workspace holding the job's intermediate files
+   * @param outputDirectory directory where the final MP4 will be written
+   * @return the rendered MP4
+   * @throws Exception if the captions cannot be read or the backend fails
    */
-  public static void renderFinalVideo(String captionsJsonPath, String outputDirectory) {
+  public static Path renderFinalVideo(JobWorkspace workspace, String outputDirectory) throws Exception {
+    return renderFinalVideo(workspace, outputDirectory, null);
+  }
+
+  /**
+   * Same as {@link #renderFinalVideo(JobWorkspace, String)}, using the
+   * render backend configured for {@code channelName} if it has one.
+   */
+  public static Path renderFinalVideo(JobWorkspace workspace, String outputDirectory, String channelName)
+      throws Exception {
+    //  Read captions, grab first line for filename
+    JSONArray captions = new JSONArray(
+      Files.readString(workspace.captionsJson(), StandardCharsets.UTF_8)
+    );
+    String firstCaption = captions.length() > 0
+      ? captions.getJSONObject(0).optString("text", "untitled")
+      : "untitled";
+
+    // Sanitize and limit length
+    String safeTitle = sanitizeForFilename(firstCaption);
+    if (safeTitle.isEmpty()) safeTitle = "untitled";
+    Path outputPath = reserve(Path.of(outputDirectory).toAbsolutePath(), safeTitle, channelName);
+    String outputFilename = outputPath.getFileName().toString();
+
     try {
-      //  Read captions, grab first line for filename
-      JSONArray captions = new JSONArray(
-        Files.readString(Path.of(captionsJsonPath), StandardCharsets.UTF_8)
-      );
-      String firstCaption = captions.length() > 0
-        ? captions.getJSONObject(0).optString("text", "untitled")
-        : "untitled";
-
-      // Sanitize and limit length
-      String safeTitle = sanitizeForFilename(firstCaption);
-      if (safeTitle.isEmpty()) safeTitle = "untitled";
-      String outputFilename = safeTitle + ".mp4";
-
-      // Build output and props absolute paths
-      Path outputPath = Path.of(outputDirectory, outputFilename);
-      String outputPathStr = outputPath.toAbsolutePath().toString();
-      String propsPath = Path.of(captionsJsonPath).toAbsolutePath().toString();
-
-      System.out.println("Output: " + outputPathStr);
+      // staged under the job's ID, so no other render can touch it
+      Path staged = outputPath.resolveSibling(STAGING_DIR).resolve(workspace.id() + "-" + outputFilename);
+      Path propsPath = writeProps(workspace, captions).toAbsolutePath();
+      Files.createDirectories(staged.getParent());
+
+      System.out.println("Output: " + outputPath);
       System.out.println("Props:  " + propsPath);
 
-      // call Remotion:
-      ProcessBuilder pb = new ProcessBuilder(
-        AppPaths.NPX,
-        "remotion",
-        "render",
-        "CaptionedShort",           // composition ID
-        outputPathStr,              // output .mp4
-        "--props=" + propsPath      // captions JSON
-      );
-      pb.directory(AppPaths.VIDRENDERER_DIR.toFile());
-      pb.inheritIO();
-
-      // run and check exit code
-      int exit = pb.start().waitFor();
-      if (exit == 0) {
-        System.out.println("✅ Rendered: " + outputFilename);
-      } else {
-        System.err.println("❌ Remotion failed with exit code: " + exit);
+      try {
+        backend(channelName).render(workspace, propsPath, staged);
+        moveIntoPlace(staged, outputPath);
+      } finally {
+        Files.deleteIfExists(staged);
+      }
+    } finally {
+      synchronized (RESERVED) {
+        RESERVED.remove(outputPath);
+      }
+    }
+    System.out.println("✅ Rendered: " + outputFilename);
+    return outputPath;
+  }
+
+  /**
+   * Returns the backend selected by {@code <CHANNEL>_RENDER_BACKEND}, or by
+   * {@code RENDER_BACKEND} when the channel has no override. The daemon is
+   * used by default; if it cannot be started, renders fall back to the CLI.
+   */
+  static RenderBackend backend(String channelName) {
+    String name = channelName == null
+      ? BACKEND
+      : Env.get(channelName.toUpperCase(Locale.ROOT) + "_RENDER_BACKEND", BACKEND);
+    switch (name.toLowerCase(Locale.ROOT)) {
+      case "cli":
+        return Renderer::renderWithCli;
+      case "chunked":
+        return new ChunkedRenderer();
+      case "ffmpeg":
+        return new FfmpegRenderer();
+      default:
+        RenderDaemon daemon = RenderDaemon.get();
+        return daemon != null ? daemon : Renderer::renderWithCli;
+    }
+  }
+
+  /** Renders with a fresh {@code npx remotion render} process against the shared {@link RemotionBundle}. */
+  static void renderWithCli(JobWorkspace workspace, Path propsJson, Path output) throws Exception {
+    ProcessBuilder pb = new ProcessBuilder(
+      AppPaths.NPX,
+      "remotion",
+      "render",
+      RemotionBundle.serveUrl(),  // prebuilt bundle (or entry point)
+      "CaptionedShort",           // composition ID
+      output.toString(),          // output .mp4
+      "--props=" + propsJson      // per-job props JSON
+    );
+    pb.directory(AppPaths.VIDRENDERER_DIR.toFile());
+    pb.inheritIO();
+
+    // run and check exit code
+    int exit = pb.start().waitFor();
+    if (exit != 0) {
+      throw new IOException("Remotion failed with exit code: " + exit);
+    }
+  }
+
+  /**
+   * Length of the composition for {@code captions}: the last caption's end
+   * plus one second, in whole frames. Mirrors {@code calculateMetadata} in
+   * {@code Root.tsx}.
+   */
+  static int durationInFrames(JSONArray captions) {
+    double lastEnd = captions.length() > 0
+      ? captions.getJSONObject(captions.length() - 1).optDouble("end", 0)
+      : 0;
+    return (int) Math.ceil((lastEnd + 1) * FPS);
+  }
+
+  private static void moveIntoPlace(Path staged, Path output) throws IOException {
+    try {
+      Files.move(staged, output, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(staged, output);
+    }
+  }
+
+  private static Path writeProps(JobWorkspace workspace, JSONArray captions) throws IOException {
+    JSONObject props = new JSONObject()
+      .put("videoSrc", workspace.staticPath(workspace.backgroundClip()))
+      .put("audioSrc", workspace.staticPath(workspace.speechMp3()))
+      .put("captions", captions)
+      .put("durationInFrames", durationInFrames(captions));
+    Files.writeString(workspace.propsJson(), props.toString(), StandardCharsets.UTF_8);
+    return workspace.propsJson();
+  }
+
+  /**
+   * Claims {@code base.mp4}, or {@code base_2.mp4}, {@code base_3.mp4}, … if
+   * that name is already pending, being rendered by another job, or was
+   * uploaded before, so neither the pending file nor the archived copy gets
+   * overwritten. The caller releases the claim from {@link #RESERVED}.
+   */
+  private static Path reserve(Path dir, String base, String channelName) {
+    UploadHistory history = channelName == null ? null : UploadHistory.forChannel(channelName);
+    synchronized (RESERVED) {
+      Path path = dir.resolve(base + ".mp4");
+      for (int n = 2; RESERVED.contains(path) || Files.exists(path)
+          || (history != null && history.contains(path.getFileName().toString())); n++) {
+        path = dir.resolve(base + "_" + n + ".mp4");
       }
-    } catch (IOException | InterruptedException e) {
-      e.printStackTrace();
+      RESERVED.add(path);
+      return path;
     }
   }
 
@@ -0,0 +1,309 @@
+package vid.builder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-channel near-duplicate index of every script the channel has produced.
+ *
+ * <p>Each script is reduced to the set of its overlapping word
+ * {@value #SHINGLE_WORDS}-grams and summarised by a {@value #HASHES}-value
+ * MinHash signature, whose fraction of matching slots estimates the Jaccard
+ * similarity of two scripts. Signatures are split into {@value #BANDS} bands
+ * and bucketed by band (locality-sensitive hashing), so a lookup only
+ * compares against scripts that share at least one band instead of scanning
+ * the whole history. A new script counts as a repeat when its estimated
+ * similarity to an earlier one reaches {@code SCRIPT_DUP_THRESHOLD}.</p>
+ *
+ * <p>The index is persisted as {@code script_index.tsv} in the channel
+ * folder, one {@code timestamp, signature, title} line per script, and is
+ * only ever appended to. A channel that has no index yet is seeded once
+ * from its whole {@link UploadHistory}: the scripts of those videos are
+ * gone, so each is indexed by the title recovered from its filename, and
+ * every check also compares the new script's title, which is how such
+ * entries are matched. A script accepted by
+ * {@link #check(String, String, String)} is held for its job in memory,
+ * where later checks see it, so two jobs of the same channel running side by
+ * side cannot both accept the same story. It is only persisted by
+ * {@link #add(String)} once the video has been rendered; a job that fails
+ * on the way {@link #release(String) releases} it, so the story can be
+ * tried again.</p>
+ */
+public final class ScriptIndex {
+    private static final int SHINGLE_WORDS = 3;
+    private static final int HASHES = 128;
+    private static final int BANDS = 32;
+    private static final int ROWS = HASHES / BANDS;
+
+    /** Estimated Jaccard similarity at or above which a script is a repeat. */
+    private static final double THRESHOLD =
+        Double.parseDouble(Env.get("SCRIPT_DUP_THRESHOLD", "0.5"));
+
+    private static final long[] SEEDS = new long[HASHES];
+    static {
+        long x = 0x5EED_5C81_97AB_1E55L;
+        for (int i = 0; i < HASHES; i++) {
+            x += 0x9E37_79B9_7F4A_7C15L;
+            SEEDS[i] = mix(x);
+        }
+    }
+
+    private static final Map<String, ScriptIndex> BY_CHANNEL = new ConcurrentHashMap<>();
+
+    /** A previously indexed script that a new one is too similar to. */
+    public record Match(String title, Instant indexedAt, double similarity) {
+    }
+
+    private record Entry(String title, Instant indexedAt, int[] signature) {
+    }
+
+    private final Path file;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Map<Long, List<Integer>>> buckets = new ArrayList<>();
+    /** Accepted scripts of jobs that have not rendered yet, by job id. */
+    private final Map<String, Entry> held = new HashMap<>();
+
+    private ScriptIndex(Path file, UploadHistory history) {
+        this.file = file;
+        for (int b = 0; b < BANDS; b++) {
+            buckets.add(new HashMap<>());
+        }
+        if (Files.exists(file)) {
+            load();
+        } else {
+            seed(history);
+        }
+    }
+
+    /** Returns the shared index of {@code channel}, loading it on first use. */
+    public static ScriptIndex forChannel(String channel) {
+        return BY_CHANNEL.computeIfAbsent(channel,
+            c -> new ScriptIndex(AppPaths.CHANNELS_ROOT.resolve(c).resolve("script_index.tsv"),
+                UploadHistory.forChannel(c)));
+    }
+
+    /** Number of scripts in the index. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the most similar earlier script (indexed, or held by another
+     * job) if {@code text} or {@code title} is a repeat; otherwise holds it
+     * for {@code jobId} and returns {@code null}.
+     */
+    public synchronized Match check(String jobId, String title, String text) {
+        int[] signature = signature(text);
+        Match match = nearest(signature, jobId);
+        // seeded entries only have a title to compare against
+        Match byTitle = nearest(signature(title), jobId);
+        if (byTitle != null && (match == null || byTitle.similarity() > match.similarity())) {
+            match = byTitle;
+        }
+        if (match != null) {
+            return match;
+        }
+        held.put(jobId, new Entry(title, Instant.now(), signature));
+        return null;
+    }
+
+    /** Indexes and persists the script held for {@code jobId}, once its video exists. */
+    public synchronized void add(String jobId) {
+        Entry entry = held.remove(jobId);
+        if (entry == null) return;
+        add(entry);
+        append(entry);
+    }
+
+    /** Drops the script held for {@code jobId} without indexing it. No-op after {@link #add(String)}. */
+    public synchronized void release(String jobId) {
+        held.remove(jobId);
+    }
+
+    private Match nearest(int[] signature, String jobId) {
+        Set<Integer> candidates = new HashSet<>();
+        for (int b = 0; b < BANDS; b++) {
+            List<Integer> bucket = buckets.get(b).get(bandKey(signature, b));
+            if (bucket != null) candidates.addAll(bucket);
+        }
+
+        List<Entry> compare = new ArrayList<>(candidates.size() + held.size());
+        for (int id : candidates) {
+            compare.add(entries.get(id));
+        }
+        // few jobs are in flight at once, so held scripts are just scanned
+        held.forEach((job, e) -> {
+            if (!job.equals(jobId)) compare.add(e);
+        });
+
+        Match best = null;
+        for (Entry e : compare) {
+            double similarity = similarity(signature, e.signature());
+            if (similarity >= THRESHOLD && (best == null || similarity > best.similarity())) {
+                best = new Match(e.title(), e.indexedAt(), similarity);
+            }
+        }
+        return best;
+    }
+
+    private void add(Entry entry) {
+        int id = entries.size();
+        entries.add(entry);
+        for (int b = 0; b < BANDS; b++) {
+            buckets.get(b).computeIfAbsent(bandKey(entry.signature(), b), k -> new ArrayList<>()).add(id);
+        }
+    }
+
+    // Persistence ----------------------------------------------------------
+
+    private void load() {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not read script index " + file + ": " + e);
+            return;
+        }
+        for (String line : lines) {
+            String[] cols = line.split("\t", 3);
+            if (cols.length < 3) continue;
+            try {
+                String[] hex = cols[1].split(",");
+                if (hex.length != HASHES) continue;
+                int[] signature = new int[HASHES];
+                for (int i = 0; i < HASHES; i++) {
+                    signature[i] = Integer.parseUnsignedInt(hex[i], 16);
+                }
+                add(new Entry(cols[2], Instant.parse(cols[0]), signature));
+            } catch (RuntimeException e) {
+                // a torn last line after a crash — skip it
+            }
+        }
+    }
+
+    /** Indexes the title of every video in {@code history} and writes them as the first lines of the file. */
+    private void seed(UploadHistory history) {
+        Set<String> seen = new HashSet<>();
+        StringBuilder lines = new StringBuilder();
+        for (UploadHistory.Entry upload : history.all()) {
+            if (!seen.add(upload.filename())) continue;
+            String title = titleOf(upload.filename());
+            Entry entry = new Entry(title, upload.time(), signature(title));
+            add(entry);
+            format(entry, lines);
+        }
+        if (entries.isEmpty()) return;
+
+        write(lines.toString());
+        System.out.printf("🗂️ Seeded script index %s with %d uploaded titles%n", file, entries.size());
+    }
+
+    /** {@code My_Story_2.mp4} → {@code My Story}, undoing the renderer's file naming. */
+    private static String titleOf(String filename) {
+        return filename
+            .replaceFirst("(?i)\\.mp4$", "")
+            .replaceFirst("_\\d+$", "")
+            .replace('_', ' ');
+    }
+
+    private void append(Entry entry) {
+        StringBuilder line = new StringBuilder();
+        format(entry, line);
+        write(line.toString());
+    }
+
+    private static void format(Entry entry, StringBuilder out) {
+        out.append(entry.indexedAt()).append('\t');
+        for (int i = 0; i < HASHES; i++) {
+            if (i > 0) out.append(',');
+            out.append(Integer.toHexString(entry.signature()[i]));
+        }
+        out.append('\t').append(entry.title().replaceAll("[\\t\\r\\n]+", " ")).append('\n');
+    }
+
+    private void write(String lines) {
+        try {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(lines);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not persist script index " + file + ": " + e);
+        }
+    }
+
+    // MinHash --------------------------------------------------------------
+
+    private static int[] signature(String text) {
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long shingle : shingles(text)) {
+            for (int i = 0; i < HASHES; i++) {
+                int h = (int) (mix(shingle ^ SEEDS[i]) >>> 33);
+                if (h < signature[i]) signature[i] = h;
+            }
+        }
+        return signature;
+    }
+
+    /** 64-bit hashes of the word n-grams of {@code text}, ignoring case and punctuation. */
+    private static Set<Long> shingles(String text) {
+        String[] words = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}']+");
+        List<String> kept = new ArrayList<>(words.length);
+        for (String w : words) {
+            if (!w.isEmpty()) kept.add(w);
+        }
+
+        Set<Long> shingles = new HashSet<>();
+        int n = Math.min(SHINGLE_WORDS, Math.max(1, kept.size()));
+        for (int i = 0; i + n <= kept.size(); i++) {
+            long h = 0;
+            for (int j = i; j < i + n; j++) {
+                h = mix(h * 31 + kept.get(j).hashCode());
+            }
+            shingles.add(h);
+        }
+        return shingles;
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return same / (double) HASHES;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long h = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            h = mix(h * 31 + signature[i]);
+        }
+        return h;
+    }
+
+    /** SplitMix64 finaliser. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+}
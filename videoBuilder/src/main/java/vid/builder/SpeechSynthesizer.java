@@ -0,0 +1,248 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONObject;
+
+/**
+ * Turns a narration script into {@link JobWorkspace#speechMp3()} with the
+ * OpenAI TTS endpoint (through {@link OpenAiClient}), without truncating
+ * long scripts.
+ *
+ * <p>The script is split at sentence boundaries into chunks of roughly
+ * {@code TTS_CHUNK_CHARS} characters, which are synthesised concurrently
+ * (up to {@code TTS_PARALLELISM} requests at once across all videos in the
+ * process). Chunks are requested as WAV and encoded to MP3 once after
+ * joining: separately encoded MP3s each carry encoder delay and padding,
+ * which would leave a click or gap at every seam. The start offset of
+ * every chunk in the joined audio is returned as a {@link Part}, so each
+ * chunk can be transcribed on its own and its captions shifted into
+ * place.</p>
+ *
+ * <p>Each response is streamed to a temp file and renamed into place, with
+ * its progress, first-byte latency and transfer time logged via
+ * {@link ProgressBodyHandler}. Chunks already synthesised with the same
+ * model, voice and speed are served from the {@link ContentCache} instead
+ * of the API.</p>
+ */
+public final class SpeechSynthesizer {
+    static final String MODEL = "tts-1";
+    static final String VOICE = "shimmer";
+    static final double SPEED = 1.3;
+
+    /** The endpoint rejects inputs longer than 4096 characters; stay well below. */
+    private static final int MAX_CHUNK_CHARS = 3000;
+    private static final int CHUNK_CHARS = Math.min(MAX_CHUNK_CHARS,
+        Integer.parseInt(Env.get("TTS_CHUNK_CHARS", "400")));
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+        Integer.parseInt(Env.get("TTS_PARALLELISM", "4")),
+        r -> {
+            Thread t = new Thread(r, "tts-chunk");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** One synthesised chunk and where it starts in the joined narration. */
+    public record Part(Path file, String text, double offsetSec, double durationSec) {}
+
+    private SpeechSynthesizer() {
+        // Utility class — no instances.
+    }
+
+    /**
+     * Synthesises {@code script} into {@link JobWorkspace#speechMp3()} and
+     * returns the chunks it was made from, in order.
+     */
+    public static List<Part> synthesize(String script, JobWorkspace workspace)
+        throws IOException, InterruptedException {
+        List<String> chunks = split(script);
+        if (chunks.isEmpty()) {
+            throw new IOException("Nothing to synthesise: script is empty");
+        }
+
+        if (chunks.size() == 1) {
+            requestSpeech(chunks.get(0), "mp3", workspace.speechMp3());
+            double duration = MediaProbe.durationSec(workspace.speechMp3());
+            return List.of(new Part(workspace.speechMp3(), chunks.get(0), 0, duration));
+        }
+
+        List<Path> files = new ArrayList<>(chunks.size());
+        List<Future<?>> requests = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            String text = chunks.get(i);
+            Path file = workspace.dir().resolve(String.format(Locale.ROOT, "speech-%03d.wav", i));
+            files.add(file);
+            requests.add(EXECUTOR.submit(() -> {
+                requestSpeech(text, "wav", file);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> f : requests) {
+                f.get();
+            }
+        } catch (ExecutionException e) {
+            requests.forEach(f -> f.cancel(true));
+            throw new IOException("TTS chunk failed: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        concat(files, workspace.dir().resolve("speech-parts.txt"), workspace.speechMp3());
+
+        List<Double> durations = MediaProbe.durationsSec(files);
+        List<Part> parts = new ArrayList<>(chunks.size());
+        double offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            parts.add(new Part(files.get(i), chunks.get(i), offset, durations.get(i)));
+            offset += durations.get(i);
+        }
+        System.out.printf("🗣️ Synthesised %d TTS chunks (%.1fs)%n", parts.size(), offset);
+        return parts;
+    }
+
+    /**
+     * Splits {@code script} at sentence boundaries into chunks of about
+     * {@code TTS_CHUNK_CHARS} characters. A single sentence longer than the
+     * endpoint allows is split at whitespace.
+     */
+    static List<String> split(String script) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.US);
+        sentences.setText(script);
+
+        int start = sentences.first();
+        for (int end = sentences.next(); end != BreakIterator.DONE; start = end, end = sentences.next()) {
+            String sentence = script.substring(start, end).strip();
+            if (sentence.isEmpty()) continue;
+            for (String piece : splitLong(sentence)) {
+                if (current.length() > 0 && current.length() + 1 + piece.length() > CHUNK_CHARS) {
+                    chunks.add(current.toString());
+                    current.setLength(0);
+                }
+                if (current.length() > 0) current.append(' ');
+                current.append(piece);
+            }
+        }
+        if (current.length() > 0) chunks.add(current.toString());
+        return chunks;
+    }
+
+    /** Breaks a run-on sentence at whitespace so no piece exceeds the endpoint limit. */
+    private static List<String> splitLong(String sentence) {
+        if (sentence.length() <= MAX_CHUNK_CHARS) return List.of(sentence);
+        List<String> pieces = new ArrayList<>();
+        String rest = sentence;
+        while (rest.length() > MAX_CHUNK_CHARS) {
+            int cut = rest.lastIndexOf(' ', MAX_CHUNK_CHARS);
+            if (cut <= 0) cut = MAX_CHUNK_CHARS;
+            pieces.add(rest.substring(0, cut).strip());
+            rest = rest.substring(cut).strip();
+        }
+        if (!rest.isEmpty()) pieces.add(rest);
+        return pieces;
+    }
+
+    /**
+     * Writes {@code text} spoken as {@code format} ({@code mp3} or
+     * {@code wav}) to {@code output}, from the {@link ContentCache} when the
+     * same text was already spoken with the same model, voice and speed,
+     * otherwise with one TTS request.
+     */
+    private static void requestSpeech(String text, String format, Path output)
+        throws IOException, InterruptedException {
+        String key = ContentCache.key(MODEL, VOICE, String.valueOf(SPEED), text);
+        String ext = "." + format;
+        if (ContentCache.copyTo("tts", key, ext, output)) {
+            return;
+        }
+
+        JSONObject json = new JSONObject()
+            .put("model", MODEL)
+            .put("input", text)
+            .put("voice", VOICE)
+            .put("speed", SPEED)
+            .put("response_format", format);
+
+        HttpRequest request = OpenAiClient.request(OpenAiClient.Endpoint.SPEECH)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+            .build();
+
+        // stream the audio to a temp file next to the target and rename it into
+        // place, so heap use stays flat and a failed download never leaves a
+        // truncated MP3 behind; every attempt (retry or hedge) gets its own file
+        Map<Path, ProgressBodyHandler<Path>> attempts = new ConcurrentHashMap<>();
+        try {
+            HttpResponse<Path> response = OpenAiClient.send(OpenAiClient.Endpoint.SPEECH, request, () -> {
+                Path tmp = output.toAbsolutePath().resolveSibling(output.getFileName() + "-" + UUID.randomUUID() + ".part");
+                ProgressBodyHandler<Path> handler = new ProgressBodyHandler<>(
+                    HttpResponse.BodyHandlers.ofFile(tmp), output.getFileName().toString());
+                attempts.put(tmp, handler);
+                return handler;
+            }, text.length() / 4);
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("TTS request failed with HTTP " + response.statusCode() + ": "
+                    + Files.readString(response.body(), StandardCharsets.UTF_8));
+            }
+            ProgressBodyHandler<Path> download = attempts.get(response.body());
+            moveIntoPlace(response.body(), output);
+            System.out.printf(Locale.US, "🔊 %s: first byte %d ms, %d KB in %d ms%n",
+                output.getFileName(), download.firstByteMillis(), download.bytes() / 1024, download.totalMillis());
+        } finally {
+            for (Path tmp : attempts.keySet()) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        ContentCache.put("tts", key, ext, output);
+    }
+
+    private static void moveIntoPlace(Path tmp, Path output) throws IOException {
+        try {
+            Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Joins the WAV chunks and encodes the result to MP3 in one pass. */
+    private static void concat(List<Path> files, Path list, Path output) throws IOException, InterruptedException {
+        StringBuilder sb = new StringBuilder();
+        for (Path f : files) {
+            sb.append("file '").append(f.toAbsolutePath()).append("'\n");
+        }
+        Files.writeString(list, sb, StandardCharsets.UTF_8);
+
+        ProcessBuilder pb = new ProcessBuilder(
+            "ffmpeg", "-y",
+            "-f", "concat", "-safe", "0",
+            "-i", list.toString(),
+            "-c:a", "libmp3lame",
+            "-q:a", "2",
+            output.toString()
+        );
+        pb.inheritIO();
+        int exit = pb.start().waitFor();
+        if (exit != 0) {
+            throw new IOException("FFmpeg TTS concat failed with exit code " + exit);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package vid.builder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that hands out reservations in arrival order.
+ *
+ * <p>The bucket holds up to {@code capacity} tokens and refills
+ * continuously at {@code capacity} per minute. {@link #acquire(long)} takes
+ * its tokens immediately, letting the balance go negative, and then sleeps
+ * until the balance it left behind would have been refilled. Every later
+ * caller therefore queues behind the debt of the earlier ones, so waiting
+ * is first come, first served and a large request cannot be overtaken
+ * forever by small ones.</p>
+ *
+ * <p>{@link #pauseUntil(long)} stops the bucket from granting anything
+ * before a deadline, used when the server answers with
+ * {@code Retry-After}. A capacity of {@code 0} or less means unlimited.</p>
+ */
+public final class TokenBucket {
+    private final double capacity;
+    private final double perNano;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = System.nanoTime();
+
+    /** Creates a full bucket allowing {@code perMinute} tokens per minute. */
+    public TokenBucket(long perMinute) {
+        this.capacity = perMinute;
+        this.perNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokens = perMinute;
+    }
+
+    /**
+     * Takes {@code amount} tokens, blocking until they are available.
+     * Requests larger than the whole bucket are capped at its capacity.
+     *
+     * @return nanoseconds spent waiting
+     */
+    public long acquire(long amount) throws InterruptedException {
+        long wait = reserve(amount);
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return wait;
+    }
+
+    /** Refuses to grant tokens before {@code deadlineNanos} ({@link System#nanoTime()} clock). */
+    public synchronized void pauseUntil(long deadlineNanos) {
+        if (deadlineNanos - pausedUntil > 0) {
+            pausedUntil = deadlineNanos;
+        }
+    }
+
+    /** Debits the bucket now and returns how long the caller must wait. */
+    private synchronized long reserve(long amount) {
+        long now = System.nanoTime();
+        long paused = Math.max(0, pausedUntil - now);
+        if (capacity <= 0 || amount <= 0) return paused;
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * perNano);
+        lastRefill = now;
+        tokens -= Math.min(amount, capacity);
+
+        long wait = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / perNano);
+        return Math.max(wait, paused);
+    }
+}
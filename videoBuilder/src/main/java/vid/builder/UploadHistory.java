@@ -0,0 +1,272 @@
+package vid.builder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory view of a channel's {@code upload_history.txt}.
+ *
+ * <p>The file holds one {@code timestamp,filename} line per upload. It is
+ * read once; after that only the bytes appended since the last look are
+ * parsed (a cheap size check per query), so "when was the last upload" and
+ * "has this file been uploaded" are answered from memory without rereading
+ * the log. The last {@code HISTORY_TAIL} entries are kept in order, and
+ * every uploaded filename is kept in a set.</p>
+ *
+ * <p>{@link #append(Instant, String)} writes the line and forces it to disk
+ * before returning. Once the live file passes {@code HISTORY_COMPACT_LINES}
+ * lines, everything but the tail is moved to
+ * {@code upload_history.archive.txt} and the live file is rewritten
+ * atomically, so it stays small however old the channel gets.</p>
+ *
+ * <p>There is one shared instance per file ({@link #forChannel(String)},
+ * {@link #open(Path)}), so the upload scheduler and the generator in the
+ * same JVM see each other's appends immediately.</p>
+ */
+public final class UploadHistory {
+    private static final int TAIL_SIZE =
+        Integer.parseInt(Env.get("HISTORY_TAIL", "1000"));
+    private static final int COMPACT_LINES =
+        Math.max(TAIL_SIZE * 2, Integer.parseInt(Env.get("HISTORY_COMPACT_LINES", "5000")));
+
+    private static final Map<Path, UploadHistory> OPEN = new ConcurrentHashMap<>();
+
+    /** One upload: when it was (or is) published and the file that was uploaded. */
+    public record Entry(Instant time, String filename) {
+        @Override
+        public String toString() {
+            return time + "," + filename;
+        }
+    }
+
+    private final Path file;
+    private final Path archive;
+    private final ArrayDeque<Entry> tail = new ArrayDeque<>();
+    private final Set<String> filenames = new HashSet<>();
+
+    /** Bytes of {@link #file} already parsed. */
+    private long readOffset;
+    /** Lines in {@link #file}, used to decide when to compact. */
+    private int liveLines;
+
+    private UploadHistory(Path file) {
+        this.file = file;
+        this.archive = file.resolveSibling("upload_history.archive.txt");
+        load();
+    }
+
+    /** Returns the shared history of {@code channel}. */
+    public static UploadHistory forChannel(String channel) {
+        return open(AppPaths.historyFile(channel));
+    }
+
+    /** Returns the shared history stored in {@code historyFile}. */
+    public static UploadHistory open(Path historyFile) {
+        return OPEN.computeIfAbsent(historyFile.toAbsolutePath().normalize(), UploadHistory::new);
+    }
+
+    /** Time of the most recent upload, if there has been one. */
+    public synchronized Optional<Instant> lastUploadTime() {
+        refresh();
+        return tail.isEmpty() ? Optional.empty() : Optional.of(tail.getLast().time());
+    }
+
+    /** Whether a file with this name has been uploaded before. */
+    public synchronized boolean contains(String filename) {
+        refresh();
+        return filenames.contains(filename);
+    }
+
+    /** Up to {@code n} most recent uploads, oldest first. */
+    public synchronized List<Entry> recent(int n) {
+        refresh();
+        List<Entry> all = new ArrayList<>(tail);
+        return List.copyOf(all.subList(Math.max(0, all.size() - n), all.size()));
+    }
+
+    /** Every upload ever recorded, including the compacted archive, oldest first. */
+    public synchronized List<Entry> all() {
+        refresh();
+        List<Entry> all = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(archive, StandardCharsets.UTF_8)) {
+            lines.map(UploadHistory::parse)
+                .filter(e -> e != null)
+                .forEach(all::add);
+        } catch (NoSuchFileException e) {
+            // nothing compacted yet
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Could not read history archive " + archive + ": " + e);
+        }
+        all.addAll(tail);
+        return all;
+    }
+
+    /** Durably records an upload of {@code filename} at {@code time}. */
+    public synchronized void append(Instant time, String filename) throws IOException {
+        refresh();
+        Entry entry = new Entry(time, filename);
+        byte[] line = (entry + "\n").getBytes(StandardCharsets.UTF_8);
+
+        Files.createDirectories(file.getParent());
+        try (FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buf = ByteBuffer.wrap(line);
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(false);
+        }
+        readOffset += line.length;
+        liveLines++;
+        remember(entry);
+
+        if (liveLines > COMPACT_LINES) {
+            compact();
+        }
+    }
+
+    // Reading --------------------------------------------------------------
+
+    private void load() {
+        try (Stream<String> lines = Files.lines(archive, StandardCharsets.UTF_8)) {
+            lines.map(UploadHistory::parse)
+                .filter(e -> e != null)
+                .forEach(e -> filenames.add(e.filename()));
+        } catch (NoSuchFileException e) {
+            // nothing compacted yet
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Could not read history archive " + archive + ": " + e);
+        }
+        refresh();
+    }
+
+    /** Parses whatever was appended to the file since the last call. */
+    private void refresh() {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (NoSuchFileException e) {
+            size = 0;
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not stat history " + file + ": " + e);
+            return;
+        }
+
+        if (size < readOffset) {
+            // rewritten underneath us (compacted by another process) — start over
+            readOffset = 0;
+            liveLines = 0;
+            tail.clear();
+        }
+        if (size == readOffset) return;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, size - readOffset));
+            while (buf.hasRemaining() && ch.read(buf, readOffset + buf.position()) > 0) {
+                // keep reading
+            }
+            byte[] bytes = buf.array();
+            int end = buf.position();
+            // only consume complete lines; a half-written one is picked up next time
+            int lastNewline = end - 1;
+            while (lastNewline >= 0 && bytes[lastNewline] != '\n') lastNewline--;
+            if (lastNewline < 0) return;
+
+            String chunk = new String(bytes, 0, lastNewline + 1, StandardCharsets.UTF_8);
+            for (String line : chunk.split("\n")) {
+                liveLines++;
+                Entry entry = parse(line);
+                if (entry != null) remember(entry);
+            }
+            readOffset += lastNewline + 1;
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not read history " + file + ": " + e);
+        }
+    }
+
+    private void remember(Entry entry) {
+        filenames.add(entry.filename());
+        tail.addLast(entry);
+        while (tail.size() > TAIL_SIZE) {
+            tail.removeFirst();
+        }
+    }
+
+    private static Entry parse(String line) {
+        String[] cols = line.strip().split(",", 2);
+        if (cols.length < 2) return null;
+        try {
+            return new Entry(Instant.parse(cols[0]), cols[1]);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Compaction -----------------------------------------------------------
+
+    /**
+     * Moves all but the last {@code HISTORY_TAIL} lines to the archive file
+     * and atomically replaces the live file with the tail.
+     */
+    private void compact() {
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            int keepFrom = Math.max(0, lines.size() - TAIL_SIZE);
+
+            StringBuilder archived = new StringBuilder();
+            for (String line : lines.subList(0, keepFrom)) {
+                archived.append(line).append('\n');
+            }
+            // the archived lines must be on disk before the live file drops them
+            try (FileChannel ch = FileChannel.open(archive,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buf = ByteBuffer.wrap(archived.toString().getBytes(StandardCharsets.UTF_8));
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                ch.force(false);
+            }
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            byte[] kept = (String.join("\n", lines.subList(keepFrom, lines.size())) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.wrap(kept);
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                ch.force(false);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            readOffset = kept.length;
+            liveLines = lines.size() - keepFrom;
+            System.out.printf("🗜️ Compacted %s: %d lines archived, %d kept%n", file, keepFrom, liveLines);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not compact history " + file + ": " + e);
+        }
+    }
+}
@@ -1,29 +1,38 @@
 package vid.builder;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.Random;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
  * High-level façade that stitches together the individual steps required to
- * produce a single short-form video:
+ * produce a single short-form video. Every artifact is written into the
+ * {@link JobWorkspace} supplied at construction, so several builders can run
+ * concurrently:
  *
  * <ol>
  *   <li>{@link #scriptWriter(String)} — ask GPT-4o (via {@link AIscraper})
  *       to write the narration script.</li>
- *   <li>{@link #voiceAct(String)} — call the OpenAI TTS endpoint and save
- *       the audio to {@link AppPaths#SPEECH_MP3}.</li>
- *   <li>{@link #generateBackground()} — pick a random gameplay clip and
- *       trim it to match the audio length via {@link BackgroundGenerator}.</li>
+ *   <li>{@link #voiceAct(String)} — synthesise the narration in parallel
+ *       chunks with {@link SpeechSynthesizer} and save the joined audio to
+ *       {@link JobWorkspace#speechMp3()}.</li>
+ *   <li>{@link #generateBackground()} — pick a gameplay source from the
+ *       {@link GameplayCatalog} and trim it to match the audio length via
+ *       {@link BackgroundGenerator}.</li>
  *   <li>{@link #generateCaptions()} — transcribe the speech with
- *       {@link WhisperTranscriber} and emit a Remotion-friendly JSON file.</li>
+ *       {@link WhisperTranscriber} (chunk by chunk, in parallel) and emit a
+ *       Remotion-friendly JSON file.</li>
  * </ol>
  *
  * <p>The {@code OPENAI_API_KEY} is read through {@link Env}.</p>
@@ -31,8 +40,34 @@ import org.json.JSONObject;
 public class VidBuilder {
 
     private static final String API_KEY = Env.get("OPENAI_API_KEY");
-    private static final String TTS_ENDPOINT = "https://api.openai.com/v1/audio/speech";
-    private static final int MAX_TTS_CHARS = 3000;
+
+    /** Narration pace of the TTS voice at speed 1.0, used to estimate clip length. */
+    private static final double TTS_SECONDS_PER_WORD = 0.4;
+
+    /**
+     * When {@code true} (the default), {@link #startBackground(String)} cuts
+     * the background clip from an estimated duration while TTS runs.
+     */
+    private static final boolean BACKGROUND_EARLY_START =
+        Boolean.parseBoolean(Env.get("BACKGROUND_EARLY_START", "true"));
+
+    /** Runs early background cuts alongside the TTS request. */
+    private static final ExecutorService BACKGROUND_EXECUTOR = Executors.newFixedThreadPool(
+        Integer.parseInt(Env.get("PIPELINE_BACKGROUND_WORKERS", "2")),
+        r -> {
+            Thread t = new Thread(r, "background-precut");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** Transcribes narration chunks in parallel. */
+    private static final ExecutorService TRANSCRIBE_EXECUTOR = Executors.newFixedThreadPool(
+        Integer.parseInt(Env.get("TTS_PARALLELISM", "4")),
+        r -> {
+            Thread t = new Thread(r, "whisper-chunk");
+            t.setDaemon(true);
+            return t;
+        });
 
     /** Default prompt used when {@link #scriptWriter()} is called with no theme. */
     private static final String DEFAULT_PROMPT =
@@ -42,7 +77,22 @@ public class VidBuilder {
         "do not start with anything besides the title of the post, and end with the phrase: " +
         "remember to like and subscribe!";
 
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final JobWorkspace workspace;
+    private Future<BackgroundGenerator.Cut> earlyBackground;
+    /** Held while the early cut runs, so {@link #abandonBackground()} can wait for ffmpeg to exit. */
+    private final Object earlyCutLock = new Object();
+    private volatile boolean abandoned;
+    private List<SpeechSynthesizer.Part> speechParts = List.of();
+
+    /** Creates a builder that writes its artifacts into {@code workspace}. */
+    public VidBuilder(JobWorkspace workspace) {
+        this.workspace = workspace;
+    }
+
+    /** Workspace holding this builder's intermediate files. */
+    public JobWorkspace workspace() {
+        return workspace;
+    }
 
     /** Generates a script using the built-in default prompt. */
     public SearchResult scriptWriter() {
@@ -55,65 +105,186 @@ public class VidBuilder {
     }
 
     /**
-     * Picks a random background gameplay clip and trims it to match the
-     * current narration length, writing the result to
-     * {@link AppPaths#BACKGROUND_CLIP}.
+     * Starts cutting the background clip from a duration estimated from
+     * {@code script} (word count at the TTS speed), so the encode overlaps
+     * with {@link #voiceAct(String)} instead of waiting for it. Does nothing
+     * when {@code BACKGROUND_EARLY_START} is disabled.
      */
-    public void generateBackground() {
-        String[] clips = {
-            "back_1.mp4", "back_2.mp4", "back_3.mp4", "back_4.mp4", "back_5.mp4",
-            "back_6.mp4", "back_7.mp4", "back_8.mp4", "back_9.mp4", "back_10.mp4"
-        };
-        String chosen = AppPaths.GAMEPLAY_DIR
-            .resolve(clips[new Random().nextInt(clips.length)])
-            .toString();
+    public void startBackground(String script) {
+        if (!BACKGROUND_EARLY_START) return;
+        double estimate = estimateNarrationSec(script);
+        Optional<BackgroundGenerator.Cut> pooled = BackgroundPool.claim(estimate, workspace.backgroundClip());
+        if (pooled.isPresent()) {
+            earlyBackground = CompletableFuture.completedFuture(pooled.get());
+            return;
+        }
+        String chosen = pickGameplayClip();
+        earlyBackground = BACKGROUND_EXECUTOR.submit(() -> {
+            synchronized (earlyCutLock) {
+                if (abandoned) throw new InterruptedException("job already closed");
+                return BackgroundGenerator.clipVideoRandomStart(
+                    chosen, estimate, workspace.backgroundClip().toString());
+            }
+        });
+    }
 
+    /**
+     * Called when the job ends without {@link #generateBackground()} having
+     * used the early clip: stops a cut still in progress and waits for its
+     * ffmpeg to exit, so nothing writes into the workspace once it is
+     * deleted. A finished but unused clip goes back to the
+     * {@link BackgroundPool}.
+     */
+    public void abandonBackground() {
+        Future<BackgroundGenerator.Cut> pending = earlyBackground;
+        earlyBackground = null;
+        if (pending == null) return;
+
+        abandoned = true;
+        if (!pending.isDone()) {
+            pending.cancel(true);
+            synchronized (earlyCutLock) {
+                // the cut has exited (or will never start)
+            }
+        }
+        if (pending.isDone() && !pending.isCancelled()) {
+            try {
+                BackgroundPool.giveBack(pending.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // the cut failed; the workspace cleanup removes whatever it left
+            }
+        }
+    }
+
+    /**
+     * Writes a background clip matching the narration length to
+     * {@link JobWorkspace#backgroundClip()}. If {@link #startBackground(String)}
+     * already cut or claimed one from an estimate, or the {@link BackgroundPool}
+     * has a long enough clip, it is only trimmed or extended to the real
+     * duration; otherwise a random gameplay clip is cut from scratch.
+     */
+    public void generateBackground() throws JobFailedException {
+        if (earlyBackground == null) {
+            try {
+                double audioDur = BackgroundGenerator.getAudioDurationSec(workspace.speechMp3().toString());
+                BackgroundPool.claim(audioDur, workspace.backgroundClip())
+                    .ifPresent(cut -> earlyBackground = CompletableFuture.completedFuture(cut));
+            } catch (Exception e) {
+                System.err.println("⚠️ Could not size background clip: " + e.getMessage());
+            }
+        }
+        if (earlyBackground != null) {
+            try {
+                BackgroundGenerator.Cut cut = earlyBackground.get();
+                double audioDur = BackgroundGenerator.getAudioDurationSec(workspace.speechMp3().toString());
+                BackgroundGenerator.fitClipToDuration(cut, audioDur);
+                return;
+            } catch (Exception e) {
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                System.err.println("⚠️ Early background cut unusable, re-cutting: " + cause.getMessage());
+            } finally {
+                earlyBackground = null;
+            }
+        }
+
+        workspace.backgroundClip().toFile().delete(); // drop any partial early cut
         BackgroundGenerator.clipVideoToAudioRandomStart(
-            chosen,
-            AppPaths.SPEECH_MP3.toString(),
-            AppPaths.BACKGROUND_CLIP.toString()
+            pickGameplayClip(),
+            workspace.speechMp3().toString(),
+            workspace.backgroundClip().toString()
         );
+        if (!workspace.backgroundClip().toFile().isFile() || workspace.backgroundClip().toFile().length() == 0) {
+            throw new JobFailedException("No background clip was produced");
+        }
+    }
+
+    /** Picks a gameplay source from the {@link GameplayCatalog}, favouring less-used ones. */
+    static String pickGameplayClip() {
+        return GameplayCatalog.get().pick().path().toString();
     }
 
     /**
-     * Transcribes {@link AppPaths#SPEECH_MP3} with Whisper and writes a
-     * Remotion-compatible captions JSON to {@link AppPaths#CAPTIONS_JSON}.
+     * Estimates how long the TTS narration of {@code script} will be, with
+     * a margin so the real audio usually fits inside the estimate and the
+     * clip only needs a stream-copy trim.
      */
-    public void generateCaptions() {
-        String whisperJson = WhisperTranscriber.transcribe(AppPaths.SPEECH_MP3.toString(), API_KEY);
-        saveRemotionCaptions(whisperJson, AppPaths.CAPTIONS_JSON.toString());
+    static double estimateNarrationSec(String script) {
+        String trimmed = script.trim();
+        int words = trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length;
+        double seconds = words * TTS_SECONDS_PER_WORD / SpeechSynthesizer.SPEED;
+        return seconds * 1.15 + 2.0;
     }
 
     /**
-     * Synthesises narration audio for {@code script} using the OpenAI TTS
-     * endpoint and writes the MP3 to {@link AppPaths#SPEECH_MP3}. Scripts
-     * longer than {@value #MAX_TTS_CHARS} characters are truncated.
+     * Transcribes {@link JobWorkspace#speechMp3()} with Whisper and writes a
+     * Remotion-compatible captions JSON to {@link JobWorkspace#captionsJson()}.
+     * When the narration was synthesised in several chunks, the chunks are
+     * transcribed in parallel and their segments shifted by each chunk's
+     * offset.
      */
-    public void voiceAct(String script) {
-        try {
-            if (script.length() > MAX_TTS_CHARS) {
-                script = script.substring(0, MAX_TTS_CHARS);
+    public void generateCaptions() throws JobFailedException {
+        JSONArray segments;
+        if (speechParts.size() <= 1) {
+            String whisperJson = WhisperTranscriber.transcribe(workspace.speechMp3().toString(), API_KEY);
+            segments = requireSegments(whisperJson, workspace.speechMp3());
+        } else {
+            List<CompletableFuture<String>> transcripts = new ArrayList<>();
+            for (SpeechSynthesizer.Part part : speechParts) {
+                transcripts.add(CompletableFuture.supplyAsync(
+                    () -> WhisperTranscriber.transcribe(part.file().toString(), API_KEY), TRANSCRIBE_EXECUTOR));
             }
 
-            JSONObject json = new JSONObject()
-                .put("model", "tts-1")
-                .put("input", script)
-                .put("voice", "shimmer")
-                .put("speed", 1.3);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(TTS_ENDPOINT))
-                .header("Authorization", "Bearer " + API_KEY)
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
-                .build();
-
-            HttpResponse<byte[]> response =
-                httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
-            Files.createDirectories(AppPaths.SPEECH_MP3.getParent());
-            Files.write(AppPaths.SPEECH_MP3, response.body());
+            segments = new JSONArray();
+            for (int i = 0; i < speechParts.size(); i++) {
+                SpeechSynthesizer.Part part = speechParts.get(i);
+                JSONArray partSegments = requireSegments(transcripts.get(i).join(), part.file());
+                for (int k = 0; k < partSegments.length(); k++) {
+                    JSONObject seg = partSegments.getJSONObject(k);
+                    segments.put(new JSONObject()
+                        .put("start", seg.getDouble("start") + part.offsetSec())
+                        .put("end", seg.getDouble("end") + part.offsetSec())
+                        .put("text", seg.getString("text")));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            throw new JobFailedException("Whisper found no speech in " + workspace.speechMp3());
+        }
+        saveRemotionCaptions(new JSONObject().put("segments", segments).toString(),
+                             workspace.captionsJson().toString());
+    }
+
+    /** Returns the {@code segments} of a Whisper response, failing the job if there are none. */
+    private static JSONArray requireSegments(String whisperJson, Path audio) throws JobFailedException {
+        if (whisperJson == null) {
+            throw new JobFailedException("Transcription of " + audio.getFileName() + " failed");
+        }
+        try {
+            return new JSONObject(whisperJson).getJSONArray("segments");
+        } catch (RuntimeException e) {
+            throw new JobFailedException("Unusable transcription of " + audio.getFileName() + ": "
+                + whisperJson.substring(0, Math.min(200, whisperJson.length())), e);
+        }
+    }
+
+    /**
+     * Synthesises narration audio for {@code script} using the OpenAI TTS
+     * endpoint and writes the MP3 to {@link JobWorkspace#speechMp3()}. Long
+     * scripts are split at sentence boundaries and synthesised in parallel
+     * by {@link SpeechSynthesizer} rather than truncated.
+     *
+     * @throws JobFailedException if no narration could be produced
+     */
+    public void voiceAct(String script) throws JobFailedException {
+        try {
+            speechParts = SpeechSynthesizer.synthesize(script, workspace);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobFailedException("Interrupted while synthesising narration", e);
         } catch (Exception e) {
-            e.printStackTrace();
+            throw new JobFailedException("Narration failed: " + e.getMessage(), e);
         }
     }
 
@@ -136,7 +307,7 @@ public class VidBuilder {
                     .put("text", seg.getString("text")));
             }
 
-            Files.writeString(AppPaths.CAPTIONS_JSON, output.toString(2), StandardCharsets.UTF_8);
+            Files.writeString(Path.of(outputPath), output.toString(2), StandardCharsets.UTF_8);
             System.out.println("✅ remotion-captions.json created: " + outputPath);
         } catch (Exception e) {
             e.printStackTrace();
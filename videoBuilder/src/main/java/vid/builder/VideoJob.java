@@ -0,0 +1,79 @@
+package vid.builder;
+
+import java.io.IOException;
+
+/**
+ * A single video travelling through the {@link GenerationPipeline}. Holds
+ * the channel and prompt it was requested with, its {@link JobWorkspace}
+ * and {@link VidBuilder}, and whatever earlier stages have produced so far.
+ *
+ * <p>A job is only ever handled by one stage at a time; the pipeline's
+ * hand-off queues publish its state safely to the next stage.</p>
+ */
+public final class VideoJob implements AutoCloseable {
+    private final String channelName;
+    private final String prompt;
+    private final JobWorkspace workspace;
+    private final VidBuilder builder;
+    private SearchResult script;
+
+    private VideoJob(String channelName, String prompt, JobWorkspace workspace) {
+        this.channelName = channelName;
+        this.prompt = prompt;
+        this.workspace = workspace;
+        this.builder = new VidBuilder(workspace);
+    }
+
+    /** Creates a job with a fresh workspace for {@code channelName}. */
+    public static VideoJob create(String channelName, String prompt) throws IOException {
+        return new VideoJob(channelName, prompt, JobWorkspace.create(channelName));
+    }
+
+    public String id() {
+        return workspace.id();
+    }
+
+    public String channelName() {
+        return channelName;
+    }
+
+    public String prompt() {
+        return prompt;
+    }
+
+    public JobWorkspace workspace() {
+        return workspace;
+    }
+
+    public VidBuilder builder() {
+        return builder;
+    }
+
+    /** Script produced by the script stage, or {@code null} before it ran. */
+    public SearchResult script() {
+        return script;
+    }
+
+    public void setScript(SearchResult script) {
+        this.script = script;
+    }
+
+    /**
+     * Deletes the job's workspace and releases its script from the
+     * {@link ScriptIndex} if the video was never rendered. An early
+     * background cut the job never used is stopped first, or handed back to
+     * the {@link BackgroundPool} if it already finished.
+     */
+    @Override
+    public void close() {
+        try {
+            builder.abandonBackground();
+        } finally {
+            try {
+                ScriptIndex.forChannel(channelName).release(id());
+            } finally {
+                workspace.close();
+            }
+        }
+    }
+}
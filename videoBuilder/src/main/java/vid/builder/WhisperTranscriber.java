@@ -1,19 +1,20 @@
 package vid.builder;
 
-import java.io.ByteArrayOutputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Locale;
 
 /**
  * Thin client for OpenAI's Whisper speech-to-text endpoint. Produces a
  * verbose JSON response containing timestamped segments that are later
  * consumed by {@link VidBuilder#saveRemotionCaptions(String, String)} to
  * drive on-screen captions in the rendered short.
+ *
+ * <p>Requests share the pooled {@link OpenAiClient}. Successful responses
+ * are kept in the {@link ContentCache}, keyed by the audio bytes, so the
+ * same audio is never transcribed twice.</p>
  */
 public class WhisperTranscriber {
     /**
@@ -21,15 +22,20 @@ public class WhisperTranscriber {
      * {@code whisper-1} model in verbose-JSON mode so segment-level start /
      * end timestamps are included in the response.
      *
-     * @param audioFilePath path to the audio file (MP3) to transcribe
+     * @param audioFilePath path to the audio file (MP3 or WAV) to transcribe
      * @param API_KEY       OpenAI API key used for authentication
      * @return the raw verbose-JSON response body, or {@code null} on failure
      */
     public static String transcribe(String audioFilePath, String API_KEY) {
         try {
-            var boundary = "----Boundary" + System.currentTimeMillis();
+            String cacheKey = ContentCache.key("whisper-1", "verbose_json",
+                                               ContentCache.keyOf(Path.of(audioFilePath)));
+            var cached = ContentCache.getString("transcripts", cacheKey, ".json");
+            if (cached.isPresent()) {
+                return cached.get();
+            }
 
-            var fileBytes = Files.readAllBytes(Path.of(audioFilePath));
+            var boundary = "----Boundary" + System.currentTimeMillis();
             var multipart = new StringBuilder();
 
             // Prepare multipart request
@@ -42,27 +48,32 @@ public class WhisperTranscriber {
             multipart.append("verbose_json\r\n");
 
             multipart.append("--").append(boundary).append("\r\n");
-            multipart.append("Content-Disposition: form-data; name=\"file\"; filename=\"speech.mp3\"\r\n");
-            multipart.append("Content-Type: audio/mpeg\r\n\r\n");
+            boolean wav = audioFilePath.toLowerCase(Locale.ROOT).endsWith(".wav");
+            multipart.append("Content-Disposition: form-data; name=\"file\"; filename=\"speech")
+                .append(wav ? ".wav" : ".mp3").append("\"\r\n");
+            multipart.append("Content-Type: ").append(wav ? "audio/wav" : "audio/mpeg").append("\r\n\r\n");
 
-            var byteStream = new ByteArrayOutputStream();
-            byteStream.write(multipart.toString().getBytes(StandardCharsets.UTF_8));
-            byteStream.write(fileBytes);
-            byteStream.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            // Stream the audio straight from disk between the header and trailer
+            // parts instead of holding the whole file (and copies of it) on heap
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.concat(
+                HttpRequest.BodyPublishers.ofByteArray(multipart.toString().getBytes(StandardCharsets.UTF_8)),
+                HttpRequest.BodyPublishers.ofFile(Path.of(audioFilePath)),
+                HttpRequest.BodyPublishers.ofByteArray(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8))
+            );
 
             // Build request
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.openai.com/v1/audio/transcriptions"))
-                .header("Authorization", "Bearer " + API_KEY)
+            HttpRequest request = OpenAiClient.request(OpenAiClient.Endpoint.TRANSCRIPTIONS)
+                .setHeader("Authorization", "Bearer " + API_KEY)
                 .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                .POST(HttpRequest.BodyPublishers.ofByteArray(byteStream.toByteArray()))
+                .POST(body)
                 .build();
 
-            HttpClient client = HttpClient.newHttpClient();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-
+            HttpResponse<String> response = OpenAiClient.send(
+                OpenAiClient.Endpoint.TRANSCRIPTIONS, request, HttpResponse.BodyHandlers::ofString, 0);
 
+            if (response.statusCode() / 100 == 2) {
+                ContentCache.putString("transcripts", cacheKey, ".json", response.body());
+            }
             return response.body();
 
         } catch (Exception e) {